@@ -0,0 +1,514 @@
+package micro;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Análisis de sesiones de cocinado exportadas a CSV (ver {@link DiarioSesiones}).
+ *
+ * Para cada comida calcula el porcentaje de cada resultado, histogramas de
+ * cuánto se pasó o se quedó corto el tiempo cocinado respecto al ideal (con
+ * {@link HistogramaLog}) y percentiles de esa diferencia.
+ *
+ * El fichero se divide en tantos trozos como hilos, cortando por saltos de
+ * línea, y cada hilo lo recorre con un buffer fijo leyendo los números
+ * directamente de los bytes. Cada hilo acumula sus propios totales y al final
+ * se suman, así que la memoria no depende del número de sesiones.
+ *
+ * Las columnas se buscan por nombre en la cabecera; hacen falta "comida",
+ * "programado", "temporizador" y "resultado".
+ *
+ * Uso: java micro.AnalizadorSesiones sesiones.csv [hilos]
+ *
+ * @author Zarkrosh
+ */
+public class AnalizadorSesiones {
+    private static final int TAM_BUFFER = 1 << 20;
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    private final Map<String, Integer> ideales;
+    private final ForkJoinPool pool;
+    private final int trozos;
+
+    /**
+     * @param comidas Catálogo, para conocer el tiempo ideal de cada comida
+     * @param pool Hilos con los que se analiza
+     * @param trozos Número de trozos en que se divide el fichero
+     */
+    public AnalizadorSesiones(List<Comida> comidas, ForkJoinPool pool, int trozos) {
+        this.ideales = new LinkedHashMap<>();
+        for(Comida c : comidas){
+            ideales.put(c.getNombre(), c.getTiempoIdeal());
+        }
+        this.pool = pool;
+        this.trozos = Math.max(1, trozos);
+    }
+
+    /**
+     * Totales de una comida.
+     */
+    public static final class Agregado {
+        final String comida;
+        final int ideal;            // -1 si no está en el catálogo
+        final long[] resultados = new long[3];
+        final HistogramaLog sobre = new HistogramaLog();       // Segundos de más
+        final HistogramaLog debajo = new HistogramaLog();      // Segundos de menos
+        long exactas = 0;
+        long programadoTotal = 0;
+        long sesiones = 0;
+
+        Agregado(String comida, int ideal) {
+            this.comida = comida;
+            this.ideal = ideal;
+        }
+
+        void registrar(int programado, int temporizador, int resultado){
+            sesiones++;
+            programadoTotal += programado;
+            if(resultado >= 0 && resultado < 3){
+                resultados[resultado]++;
+            }
+            if(ideal >= 0){
+                int d = temporizador - ideal;
+                if(d > 0){
+                    sobre.registrar(d);
+                }else if(d < 0){
+                    debajo.registrar(-(long) d);
+                }else{
+                    exactas++;
+                }
+            }
+        }
+
+        void sumar(Agregado otro){
+            for(int i = 0; i < 3; i++){
+                resultados[i] += otro.resultados[i];
+            }
+            sobre.sumar(otro.sobre);
+            debajo.sumar(otro.debajo);
+            exactas += otro.exactas;
+            programadoTotal += otro.programadoTotal;
+            sesiones += otro.sesiones;
+        }
+
+        /**
+         * @param q Fracción (0..1)
+         * @return Percentil de temporizador - ideal (s)
+         */
+        public long percentil(double q){
+            long n = debajo.getTotal() + exactas + sobre.getTotal();
+            if(n == 0){
+                return 0;
+            }
+            long posicion = Math.max(1, Math.min(n, (long) Math.ceil(q * n)));
+            if(posicion <= debajo.getTotal()){
+                // Los negativos en orden ascendente van de mayor a menor magnitud
+                return -debajo.valorEnPosicion(debajo.getTotal() - posicion + 1);
+            }
+            posicion -= debajo.getTotal();
+            if(posicion <= exactas){
+                return 0;
+            }
+            return sobre.valorEnPosicion(posicion - exactas);
+        }
+
+        public String getComida(){
+            return comida;
+        }
+
+        public long getSesiones(){
+            return sesiones;
+        }
+
+        public long getResultado(int resultado){
+            return resultados[resultado];
+        }
+
+        public HistogramaLog getSobre(){
+            return sobre;
+        }
+
+        public HistogramaLog getDebajo(){
+            return debajo;
+        }
+    }
+
+    /**
+     * Analiza un fichero CSV.
+     * @param fichero Ruta del CSV
+     * @return Totales por comida, en orden de aparición del catálogo y luego del fichero
+     * @throws IOException Si no se puede leer o falta alguna columna
+     */
+    public List<Agregado> analizar(Path fichero) throws IOException {
+        final int[] columnas;
+        final long inicio;
+        final long tamano;
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            tamano = canal.size();
+            ByteBuffer b = ByteBuffer.allocate((int) Math.min(64 * 1024, tamano));
+            while(b.hasRemaining() && canal.read(b) > 0){
+                // Lee el principio para la cabecera
+            }
+            byte[] datos = b.array();
+            int fin = 0;
+            while(fin < b.position() && datos[fin] != '\n') fin++;
+            if(fin == b.position()){
+                throw new IOException("No se encuentra la cabecera del CSV.");
+            }
+            columnas = columnas(new String(datos, 0, fin, StandardCharsets.UTF_8).trim());
+            inicio = fin + 1;
+        }
+
+        // Trozos del mismo tamaño; cada uno procesa las líneas que empiezan en él
+        List<CompletableFuture<Map<String, Agregado>>> partes = new ArrayList<>();
+        long resto = tamano - inicio;
+        for(int i = 0; i < trozos; i++){
+            final long desde = inicio + resto * i / trozos;
+            final long hasta = inicio + resto * (i + 1) / trozos;
+            partes.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return new Trozo(fichero, columnas).procesar(desde, hasta);
+                } catch (IOException ex) {
+                    throw new CompletionException(ex);
+                }
+            }, pool));
+        }
+
+        Map<String, Agregado> total = new LinkedHashMap<>();
+        for(Map.Entry<String, Integer> e : ideales.entrySet()){
+            total.put(e.getKey(), new Agregado(e.getKey(), e.getValue()));
+        }
+        try {
+            for(CompletableFuture<Map<String, Agregado>> f : partes){
+                for(Agregado a : f.join().values()){
+                    Agregado t = total.get(a.comida);
+                    if(t == null){
+                        total.put(a.comida, t = new Agregado(a.comida, a.ideal));
+                    }
+                    t.sumar(a);
+                }
+            }
+        } catch (CompletionException ex) {
+            if(ex.getCause() instanceof IOException){
+                throw (IOException) ex.getCause();
+            }
+            throw ex;
+        }
+        List<Agregado> lista = new ArrayList<>();
+        for(Agregado a : total.values()){
+            if(a.sesiones > 0){
+                lista.add(a);
+            }
+        }
+        return lista;
+    }
+
+    /**
+     * @return Posición de comida, programado, temporizador y resultado
+     */
+    private static int[] columnas(String cabecera) throws IOException {
+        List<String> nombres = Arrays.asList(cabecera.split(","));
+        String[] buscadas = {"comida", "programado", "temporizador", "resultado"};
+        int[] columnas = new int[buscadas.length];
+        for(int i = 0; i < buscadas.length; i++){
+            columnas[i] = nombres.indexOf(buscadas[i]);
+            if(columnas[i] < 0){
+                throw new IOException("Falta la columna \"" + buscadas[i] + "\" en el CSV.");
+            }
+        }
+        return columnas;
+    }
+
+    /**
+     * Recorre un trozo del fichero con un buffer fijo.
+     */
+    private class Trozo {
+        private final Path fichero;
+        private final int colComida;
+        private final int colProgramado;
+        private final int colTemporizador;
+        private final int colResultado;
+        private final int numColumnas;
+        private final Map<String, Agregado> agregados = new LinkedHashMap<>();
+        private final int[] campoInicio;
+        private final int[] campoFin;
+        // Últimos nombres vistos, para no crear un String por línea
+        private byte[][] nombres = new byte[16][];
+        private Agregado[] porNombre = new Agregado[16];
+        private int numNombres = 0;
+        private long errores = 0;
+
+        Trozo(Path fichero, int[] columnas) {
+            this.fichero = fichero;
+            colComida = columnas[0];
+            colProgramado = columnas[1];
+            colTemporizador = columnas[2];
+            colResultado = columnas[3];
+            int max = 0;
+            for(int c : columnas) max = Math.max(max, c);
+            numColumnas = max + 1;
+            campoInicio = new int[numColumnas];
+            campoFin = new int[numColumnas];
+        }
+
+        Map<String, Agregado> procesar(long desde, long hasta) throws IOException {
+            try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+                ByteBuffer b = ByteBuffer.allocate(TAM_BUFFER);
+                byte[] d = b.array();
+                long pos = desde;
+                // Si no empieza al principio de una línea, esa línea es del trozo anterior
+                if(desde > 0){
+                    ByteBuffer uno = ByteBuffer.allocate(1);
+                    canal.read(uno, desde - 1);
+                    if(uno.get(0) != '\n'){
+                        pos = saltarLinea(canal, b, desde);
+                    }
+                }
+                int lleno = 0;
+                long base = pos;        // Posición en el fichero de d[0]
+                boolean eof = false;
+                while(true){
+                    // Rellena el buffer
+                    b.clear().position(lleno);
+                    while(b.hasRemaining() && !eof){
+                        int n = canal.read(b, base + b.position());
+                        if(n < 0) eof = true;
+                        else if(n == 0) break;
+                    }
+                    int limite = b.position();
+                    int i = 0;
+                    while(i < limite){
+                        if(base + i >= hasta){
+                            return terminar();
+                        }
+                        int finLinea = i;
+                        while(finLinea < limite && d[finLinea] != '\n') finLinea++;
+                        if(finLinea == limite && !eof){
+                            break;      // Línea a medias: se completa en la siguiente vuelta
+                        }
+                        linea(d, i, finLinea);
+                        i = finLinea + 1;
+                    }
+                    if(eof && i >= limite){
+                        return terminar();
+                    }
+                    if(i == 0 && limite == d.length){
+                        throw new IOException("Línea demasiado larga en la posición " + base + ".");
+                    }
+                    // Mueve lo que queda al principio
+                    lleno = limite - i;
+                    System.arraycopy(d, i, d, 0, lleno);
+                    base += i;
+                }
+            }
+        }
+
+        private Map<String, Agregado> terminar(){
+            if(errores > 0){
+                System.out.println("[!] Se han ignorado " + errores + " líneas no válidas.");
+            }
+            return agregados;
+        }
+
+        private long saltarLinea(FileChannel canal, ByteBuffer b, long pos) throws IOException {
+            while(true){
+                b.clear();
+                int n = canal.read(b, pos);
+                if(n <= 0){
+                    return pos;
+                }
+                byte[] d = b.array();
+                for(int i = 0; i < n; i++){
+                    if(d[i] == '\n'){
+                        return pos + i + 1;
+                    }
+                }
+                pos += n;
+            }
+        }
+
+        /**
+         * Procesa una línea d[desde..hasta), sin el salto de línea.
+         */
+        private void linea(byte[] d, int desde, int hasta){
+            if(hasta > desde && d[hasta - 1] == '\r') hasta--;
+            if(hasta == desde) return;
+            // Separa los campos que hacen falta (respetando comillas)
+            int campo = 0;
+            int i = desde;
+            while(campo < numColumnas){
+                int inicioCampo = i;
+                if(i < hasta && d[i] == '"'){
+                    i++;
+                    while(i < hasta && !(d[i] == '"' && (i + 1 >= hasta || d[i + 1] != '"'))){
+                        i += d[i] == '"' ? 2 : 1;
+                    }
+                    i++;
+                }
+                while(i < hasta && d[i] != ',') i++;
+                campoInicio[campo] = inicioCampo;
+                campoFin[campo] = i;
+                campo++;
+                if(i >= hasta) break;
+                i++;
+            }
+            if(campo < numColumnas){
+                errores++;
+                return;
+            }
+            int programado = entero(d, campoInicio[colProgramado], campoFin[colProgramado]);
+            int temporizador = entero(d, campoInicio[colTemporizador], campoFin[colTemporizador]);
+            int resultado = entero(d, campoInicio[colResultado], campoFin[colResultado]);
+            if(programado == Integer.MIN_VALUE || temporizador == Integer.MIN_VALUE || resultado == Integer.MIN_VALUE){
+                errores++;
+                return;
+            }
+            agregado(d, campoInicio[colComida], campoFin[colComida]).registrar(programado, temporizador, resultado);
+        }
+
+        /**
+         * Busca los totales de una comida comparando los bytes del nombre.
+         */
+        private Agregado agregado(byte[] d, int desde, int hasta){
+            int largo = hasta - desde;
+            for(int k = 0; k < numNombres; k++){
+                byte[] n = nombres[k];
+                if(n.length == largo && iguales(n, d, desde)){
+                    return porNombre[k];
+                }
+            }
+            String nombre = texto(d, desde, hasta);
+            Agregado a = agregados.get(nombre);
+            if(a == null){
+                Integer ideal = ideales.get(nombre);
+                a = new Agregado(nombre, ideal == null ? -1 : ideal);
+                agregados.put(nombre, a);
+            }
+            if(numNombres == nombres.length){
+                // Muchas comidas distintas: se queda con las más recientes
+                numNombres = 0;
+            }
+            nombres[numNombres] = Arrays.copyOfRange(d, desde, hasta);
+            porNombre[numNombres++] = a;
+            return a;
+        }
+    }
+
+    private static boolean iguales(byte[] n, byte[] d, int desde){
+        for(int i = 0; i < n.length; i++){
+            if(n[i] != d[desde + i]) return false;
+        }
+        return true;
+    }
+
+    private static String texto(byte[] d, int desde, int hasta){
+        if(hasta - desde >= 2 && d[desde] == '"' && d[hasta - 1] == '"'){
+            return new String(d, desde + 1, hasta - desde - 2, StandardCharsets.UTF_8).replace("\"\"", "\"");
+        }
+        return new String(d, desde, hasta - desde, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Entero del campo, o Integer.MIN_VALUE si no es válido
+     */
+    private static int entero(byte[] d, int desde, int hasta){
+        while(desde < hasta && d[desde] == ' ') desde++;
+        boolean negativo = desde < hasta && d[desde] == '-';
+        if(negativo) desde++;
+        if(desde >= hasta) return Integer.MIN_VALUE;
+        long v = 0;
+        for(int i = desde; i < hasta; i++){
+            int c = d[i] - '0';
+            if(c < 0 || c > 9){
+                if(d[i] == ' ') break;
+                return Integer.MIN_VALUE;
+            }
+            v = v * 10 + c;
+            if(v > Integer.MAX_VALUE) return Integer.MIN_VALUE;
+        }
+        return (int) (negativo ? -v : v);
+    }
+
+    /**
+     * Escribe el informe de un análisis.
+     * @param agregados Totales por comida
+     */
+    public static void imprimir(List<Agregado> agregados){
+        System.out.printf("%-20s %12s %7s %7s %7s %8s %8s %8s%n", "Comida", "Sesiones", "Bien", "Poco", "Mucho", "p50", "p90", "p99");
+        for(Agregado a : agregados){
+            double n = a.sesiones;
+            System.out.printf("%-20s %12d %6.1f%% %6.1f%% %6.1f%%", a.comida, a.sesiones,
+                    100 * a.resultados[Comida.COCINADO_BIEN] / n,
+                    100 * a.resultados[Comida.COCINADO_POCO] / n,
+                    100 * a.resultados[Comida.COCINADO_MUCHO] / n);
+            if(a.ideal < 0){
+                System.out.println("   (no está en el catálogo)");
+                continue;
+            }
+            for(double q : PERCENTILES){
+                System.out.printf(" %+7ds", a.percentil(q));
+            }
+            System.out.println();
+        }
+        for(Agregado a : agregados){
+            if(a.ideal < 0) continue;
+            System.out.printf("%n%s (ideal %d s): segundos de menos / de más%n", a.comida, a.ideal);
+            imprimirHistograma("  de menos", a.debajo);
+            imprimirHistograma("  de más", a.sobre);
+        }
+    }
+
+    private static void imprimirHistograma(String titulo, HistogramaLog h){
+        System.out.printf("%s: %d sesiones, máximo %d s%n", titulo, h.getTotal(), h.getMaximo());
+        if(h.getTotal() == 0) return;
+        // Agrupa en potencias de dos para que el informe sea corto
+        long desde = 1;
+        while(desde <= h.getMaximo()){
+            long hasta = desde * 2 - 1;
+            long n = 0;
+            for(int i = 0; i < HistogramaLog.CUBOS; i++){
+                if(HistogramaLog.inicio(i) >= desde && HistogramaLog.inicio(i) <= hasta){
+                    n += h.getCuenta(i);
+                }
+            }
+            if(n > 0){
+                int barra = (int) Math.round(40.0 * n / h.getTotal());
+                char[] c = new char[barra];
+                Arrays.fill(c, '#');
+                System.out.printf("    %6d-%-6d %10d %s%n", desde, hasta, n, new String(c));
+            }
+            desde *= 2;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1){
+            System.out.println("Uso: java micro.AnalizadorSesiones sesiones.csv [hilos]");
+            System.exit(1);
+        }
+        int hilos = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(hilos);
+        AnalizadorSesiones analizador = new AnalizadorSesiones(SimuladorHornos.cargarCatalogo(), pool, hilos);
+        long t = System.nanoTime();
+        List<Agregado> agregados = analizador.analizar(Paths.get(args[0]));
+        double s = (System.nanoTime() - t) / 1e9;
+        imprimir(agregados);
+        long sesiones = 0;
+        for(Agregado a : agregados) sesiones += a.sesiones;
+        System.out.printf("%n%d sesiones en %.2f s (%.1f M sesiones/s, %d hilos)%n", sesiones, s, sesiones / s / 1e6, hilos);
+        pool.shutdown();
+    }
+}
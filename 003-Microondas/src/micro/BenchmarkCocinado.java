@@ -0,0 +1,82 @@
+package micro;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compara la evaluación de sesiones una a una ({@link Comida#evaluar(int)})
+ * con la evaluación por lotes de {@link EvaluadorCocinado}.
+ *
+ * Cada medida se repite varias veces después de calentar la JVM y se muestra
+ * la mejor; los resultados se suman en una comprobación para que el JIT no
+ * elimine el trabajo.
+ *
+ * Uso: java micro.BenchmarkCocinado [sesiones] [repeticiones]
+ *
+ * @author Zarkrosh
+ */
+public class BenchmarkCocinado {
+    private static final int CALENTAMIENTO = 5;
+
+    private static long comprobacion = 0;
+
+    public static void main(String[] args) throws Exception {
+        int sesiones = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        int repeticiones = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        ArrayList<Comida> catalogo = SimuladorHornos.cargarCatalogo();
+        Comida[] porIndice = catalogo.toArray(new Comida[0]);
+        int[] comidas = new int[sesiones];
+        int[] tiempos = new int[sesiones];
+        int[] resultados = new int[sesiones];
+        Random r = new Random(42);
+        for(int i = 0; i < sesiones; i++){
+            comidas[i] = r.nextInt(porIndice.length);
+            Comida c = porIndice[comidas[i]];
+            tiempos[i] = (int) Math.round(c.getTiempoIdeal() + r.nextGaussian() * c.getMargen() * 1.5);
+        }
+        EvaluadorCocinado evaluador = new EvaluadorCocinado(catalogo);
+        Comida primera = porIndice[0];
+
+        System.out.printf("%d sesiones, %d comidas%n", sesiones, porIndice.length);
+        medir("Escalar, varias comidas", sesiones, repeticiones, () -> {
+            for(int i = 0; i < sesiones; i++){
+                resultados[i] = porIndice[comidas[i]].evaluar(tiempos[i]);
+            }
+            comprobacion += resultados[sesiones - 1];
+        });
+        medir("Lote, varias comidas", sesiones, repeticiones, () -> {
+            evaluador.evaluar(comidas, tiempos, resultados, 0, sesiones);
+            comprobacion += resultados[sesiones - 1];
+        });
+        medir("Lote, varias comidas (contar)", sesiones, repeticiones, () -> {
+            long[] cuentas = new long[porIndice.length * 3];
+            evaluador.contar(comidas, tiempos, 0, sesiones, cuentas);
+            comprobacion += cuentas[0];
+        });
+        medir("Escalar, una comida", sesiones, repeticiones, () -> {
+            for(int i = 0; i < sesiones; i++){
+                resultados[i] = primera.evaluar(tiempos[i]);
+            }
+            comprobacion += resultados[sesiones - 1];
+        });
+        medir("Lote, una comida", sesiones, repeticiones, () -> {
+            EvaluadorCocinado.evaluar(primera, tiempos, resultados, 0, sesiones);
+            comprobacion += resultados[sesiones - 1];
+        });
+        System.out.println("(comprobación " + comprobacion + ")");
+    }
+
+    private static void medir(String nombre, int sesiones, int repeticiones, Runnable prueba){
+        for(int i = 0; i < CALENTAMIENTO; i++){
+            prueba.run();
+        }
+        long mejor = Long.MAX_VALUE;
+        for(int i = 0; i < repeticiones; i++){
+            long t = System.nanoTime();
+            prueba.run();
+            mejor = Math.min(mejor, System.nanoTime() - t);
+        }
+        System.out.printf("%-32s %8.2f ms  %6.2f ns/sesión%n", nombre, mejor / 1e6, (double) mejor / sesiones);
+    }
+}
@@ -0,0 +1,165 @@
+package micro;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compara las políticas de {@link ColaCoccion} reproduciendo la misma traza
+ * de llegadas sobre un {@link RelojVirtual}.
+ *
+ * La traza se lee de un CSV (llegada en segundos, usuario, comida, segundos)
+ * o se genera: llegadas de Poisson con la carga pedida (fracción del tiempo
+ * que el horno estaría ocupado) y unas pocas personas que dejan muchas más
+ * comidas que el resto. Para cada política se muestra la espera media, sus
+ * percentiles, el rendimiento y, calculando la espera media de cada persona,
+ * la media de todas (cada persona cuenta igual) y la de la peor tratada.
+ *
+ * Uso: java micro.BenchmarkCola [trabajos] [carga] [semilla]
+ *      java micro.BenchmarkCola traza.csv
+ *
+ * @author Zarkrosh
+ */
+public class BenchmarkCola {
+    private static final long NANOS_SEGUNDO = 1000000000L;
+    // Personas de la traza generada y cuántas de ellas acaparan
+    private static final int USUARIOS = 20;
+    private static final int ACAPARADORES = 3;
+    private static final double PROB_ACAPARADOR = 0.5;
+    private static final String[] POLITICAS = {"fifo", "sjf", "reparto"};
+
+    /**
+     * Una llegada de la traza.
+     */
+    private static final class Llegada {
+        final long instante;        // ns desde el inicio
+        final String usuario;
+        final Comida comida;
+        final int segundos;
+
+        Llegada(long instante, String usuario, Comida comida, int segundos) {
+            this.instante = instante;
+            this.usuario = usuario;
+            this.comida = comida;
+            this.segundos = segundos;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Comida> catalogo = SimuladorHornos.cargarCatalogo();
+        List<Llegada> traza;
+        if(args.length == 1 && args[0].endsWith(".csv")){
+            traza = leerTraza(args[0], catalogo);
+        }else{
+            int trabajos = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+            double carga = args.length > 1 ? Double.parseDouble(args[1]) : 0.9;
+            long semilla = args.length > 2 ? Long.parseLong(args[2]) : 42;
+            traza = generarTraza(catalogo, trabajos, carga, semilla);
+        }
+        System.out.printf("%d trabajos, %d comidas%n", traza.size(), catalogo.size());
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %12s %12s %12s %8s%n", "Política", "media (s)", "p50", "p90", "p99", "máx",
+                "trabajos/h", "por usuario", "peor usuario", "ms");
+        for(String nombre : POLITICAS){
+            ejecutar(nombre, traza);
+        }
+    }
+
+    private static void ejecutar(String nombre, List<Llegada> traza){
+        long t = System.nanoTime();
+        RelojVirtual reloj = new RelojVirtual();
+        final List<ColaCoccion.Trabajo> terminados = new ArrayList<>(traza.size());
+        final ColaCoccion cola = new ColaCoccion(ColaCoccion.politica(nombre), reloj, 1000, new ColaCoccion.Oyente() {
+            @Override
+            public void empieza(ColaCoccion.Trabajo trabajo) {
+            }
+
+            @Override
+            public void termina(ColaCoccion.Trabajo trabajo) {
+                terminados.add(trabajo);
+            }
+        });
+        for(final Llegada l : traza){
+            reloj.programar(() -> cola.encolar(l.usuario, l.comida, l.segundos), l.instante);
+        }
+        reloj.ejecutarTodo();
+        double ms = (System.nanoTime() - t) / 1e6;
+
+        // Espera media por persona
+        Map<String, long[]> porUsuario = new HashMap<>();
+        for(ColaCoccion.Trabajo tr : terminados){
+            long[] s = porUsuario.get(tr.getUsuario());
+            if(s == null){
+                porUsuario.put(tr.getUsuario(), s = new long[2]);
+            }
+            s[0] += tr.getInicio() - tr.getLlegada();
+            s[1]++;
+        }
+        double peor = 0;
+        double suma = 0;
+        for(long[] s : porUsuario.values()){
+            double media = (double) s[0] / s[1] / NANOS_SEGUNDO;
+            suma += media;
+            peor = Math.max(peor, media);
+        }
+        HistogramaLog espera = cola.getEspera();
+        System.out.printf("%-8s %10.1f %10.1f %10.1f %10.1f %10.1f %12.1f %12.1f %12.1f %8.0f%n", nombre,
+                cola.getEsperaMedia() / 1000, espera.percentil(0.5) / 1000.0, espera.percentil(0.9) / 1000.0,
+                espera.percentil(0.99) / 1000.0, espera.getMaximo() / 1000.0, cola.getRendimiento(),
+                suma / Math.max(1, porUsuario.size()), peor, ms);
+    }
+
+    private static List<Llegada> generarTraza(List<Comida> catalogo, int trabajos, double carga, long semilla){
+        Random r = new Random(semilla);
+        double media = 0;
+        for(Comida c : catalogo){
+            media += c.getTiempoIdeal();
+        }
+        media /= catalogo.size();
+        // Tiempo medio entre llegadas para que el horno esté ocupado esa fracción
+        double entreLlegadas = media / carga;
+        List<Llegada> traza = new ArrayList<>(trabajos);
+        double instante = 0;
+        for(int i = 0; i < trabajos; i++){
+            instante += -Math.log(1 - r.nextDouble()) * entreLlegadas;
+            int u = r.nextDouble() < PROB_ACAPARADOR ? r.nextInt(ACAPARADORES) : ACAPARADORES + r.nextInt(USUARIOS - ACAPARADORES);
+            Comida c = catalogo.get(r.nextInt(catalogo.size()));
+            int segundos = (int) Math.max(1, Math.round(c.getTiempoIdeal() + r.nextGaussian() * c.getMargen()));
+            traza.add(new Llegada((long) (instante * NANOS_SEGUNDO), "usuario" + u, c, segundos));
+        }
+        return traza;
+    }
+
+    private static List<Llegada> leerTraza(String ruta, List<Comida> catalogo) throws IOException {
+        Map<String, Comida> porNombre = new HashMap<>();
+        for(Comida c : catalogo){
+            porNombre.put(c.getNombre(), c);
+        }
+        List<Llegada> traza = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(Paths.get(ruta), StandardCharsets.UTF_8)) {
+            String linea;
+            int n = 0;
+            while((linea = br.readLine()) != null){
+                n++;
+                String[] campos = linea.split(",");
+                if(campos.length < 4 || (n == 1 && campos[0].trim().equals("llegada"))){
+                    continue;
+                }
+                Comida c = porNombre.get(campos[2].trim());
+                if(c == null){
+                    System.out.println("[!] Comida desconocida en la línea " + n + ": " + campos[2]);
+                    continue;
+                }
+                long instante = (long) (Double.parseDouble(campos[0].trim()) * NANOS_SEGUNDO);
+                traza.add(new Llegada(instante, campos[1].trim(), c, Integer.parseInt(campos[3].trim())));
+            }
+        }
+        return traza;
+    }
+}
@@ -0,0 +1,345 @@
+package micro;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.swing.ImageIcon;
+
+/**
+ * Caché en disco de las imágenes de las comidas ya decodificadas.
+ *
+ * Cada imagen se guarda escalada y en píxeles ARGB en un fichero cuyo nombre es
+ * el hash de la comida (nombre, tiempos y píxeles), así que las comidas que no
+ * cambian entre versiones del catálogo se reaprovechan. Además, por cada
+ * catálogo se guarda un índice con su huella (SHA-1 de su contenido) y los
+ * datos de sus comidas: si la huella coincide, el catálogo se carga entero
+ * desde la caché sin decodificar Base64 ni PNG. Si el catálogo cambia, aunque
+ * sea sin cambiar de tamaño ni de fecha (p.ej. dentro de un jar), la huella
+ * deja de coincidir y se vuelve a generar. Al guardar un índice se borran las
+ * imágenes a las que ya no se refiere ninguno.
+ *
+ * Por defecto se usa el directorio ~/.microondas/cache (propiedad "micro.cache").
+ *
+ * @author Zarkrosh
+ */
+public class CacheImagenes {
+    static final int MAGICO_INDICE = 0x434D4443;
+    static final int VERSION = 4;
+    // Tamaño máximo con el que se guardan las imágenes
+    static final int ANCHO_MAX = 225;
+    static final int ALTO_MAX = 150;
+
+    private static final int LARGO_HUELLA = 20;    // SHA-1
+
+    private final Path directorio;
+
+    public CacheImagenes() {
+        this(Paths.get(System.getProperty("micro.cache",
+                System.getProperty("user.home") + "/.microondas/cache")));
+    }
+
+    public CacheImagenes(Path directorio) {
+        this.directorio = directorio;
+    }
+
+    /**
+     * Carga un catálogo desde la caché.
+     * @param catalogo Catálogo original
+     * @return Comidas del catálogo, o null si no está en caché o ha cambiado
+     */
+    public ArrayList<Comida> cargar(URL catalogo){
+        Path indice = ficheroIndice(catalogo);
+        if(!Files.isRegularFile(indice)){
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indice)))) {
+            if(in.readInt() != MAGICO_INDICE || in.readInt() != VERSION){
+                return null;
+            }
+            byte[] guardada = new byte[LARGO_HUELLA];
+            in.readFully(guardada);
+            if(!MessageDigest.isEqual(guardada, huella(catalogo))){
+                // El catálogo ha cambiado
+                return null;
+            }
+            int n = in.readInt();
+            ArrayList<Comida> comidas = new ArrayList<>(n);
+            for(int i = 0; i < n; i++){
+                String nombre = in.readUTF();
+                int tiempo = in.readInt();
+                int margen = in.readInt();
+                String curva = in.readUTF();
+                String programa = in.readUTF();
+                Path raster = directorio.resolve(in.readUTF() + ".argb");
+                if(!Files.isRegularFile(raster)){
+                    return null;
+                }
+                comidas.add(new Comida(nombre, tiempo, margen, new ImagenCacheada(raster), curva, programa));
+            }
+            return comidas;
+        } catch (IOException ex) {
+            System.out.println("[!] Caché de imágenes no válida, se regenera: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Guarda un catálogo en la caché desde un hilo aparte.
+     * @param catalogo Catálogo original
+     * @param comidas Comidas leídas del catálogo
+     */
+    public void guardarEnSegundoPlano(final URL catalogo, final List<Comida> comidas){
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    guardar(catalogo, comidas);
+                } catch (IOException ex) {
+                    System.out.println("[!] No se ha podido guardar la caché de imágenes: " + ex.getMessage());
+                }
+            }
+        }, "cache-imagenes");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    /**
+     * Guarda un catálogo en la caché. Las imágenes que ya estaban no se reescriben.
+     * @param catalogo Catálogo original
+     * @param comidas Comidas leídas del catálogo
+     * @throws IOException Si no se puede escribir la caché
+     */
+    public void guardar(URL catalogo, List<Comida> comidas) throws IOException {
+        Files.createDirectories(directorio);
+        byte[] huella = huella(catalogo);
+        Path temporal = Files.createTempFile(directorio, "indice", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+                out.writeInt(MAGICO_INDICE);
+                out.writeInt(VERSION);
+                out.write(huella);
+                out.writeInt(comidas.size());
+                for(Comida c : comidas){
+                    BufferedImage img = escalar(c.getImagen());
+                    String hash = hash(c, img);
+                    Path raster = directorio.resolve(hash + ".argb");
+                    if(!Files.isRegularFile(raster)){
+                        escribirRaster(img, raster);
+                    }
+                    out.writeUTF(c.getNombre());
+                    out.writeInt(c.getTiempoIdeal());
+                    out.writeInt(c.getMargen());
+                    out.writeUTF(c.getDefinicionCurva() == null ? "" : c.getDefinicionCurva());
+                    out.writeUTF(c.getDefinicionPrograma() == null ? "" : c.getDefinicionPrograma());
+                    out.writeUTF(hash);
+                }
+            }
+            Files.move(temporal, ficheroIndice(catalogo), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        borrarHuerfanas();
+    }
+
+    /**
+     * Borra las imágenes a las que no se refiere ningún índice. Un índice que
+     * no se puede leer (p.ej. de otra versión) no protege las suyas: tampoco
+     * se usaría al cargar.
+     */
+    private void borrarHuerfanas() throws IOException {
+        Set<String> usadas = new HashSet<>();
+        try (DirectoryStream<Path> indices = Files.newDirectoryStream(directorio, "catalogo-*.idx")) {
+            for(Path indice : indices){
+                leerReferencias(indice, usadas);
+            }
+        }
+        try (DirectoryStream<Path> rasters = Files.newDirectoryStream(directorio, "*.argb")) {
+            for(Path raster : rasters){
+                String nombre = raster.getFileName().toString();
+                if(!usadas.contains(nombre.substring(0, nombre.length() - ".argb".length()))){
+                    Files.deleteIfExists(raster);
+                }
+            }
+        }
+    }
+
+    /**
+     * Añade a un conjunto los hashes de las imágenes de un índice.
+     */
+    private static void leerReferencias(Path indice, Set<String> usadas){
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indice)))) {
+            if(in.readInt() != MAGICO_INDICE || in.readInt() != VERSION){
+                return;
+            }
+            in.readFully(new byte[LARGO_HUELLA]);
+            int n = in.readInt();
+            for(int i = 0; i < n; i++){
+                in.readUTF();
+                in.readInt();
+                in.readInt();
+                in.readUTF();
+                in.readUTF();
+                usadas.add(in.readUTF());
+            }
+        } catch (IOException ex) {
+            // Índice dañado: no cuenta
+        }
+    }
+
+    /**
+     * @return SHA-1 del contenido del catálogo
+     */
+    private static byte[] huella(URL catalogo) throws IOException {
+        MessageDigest md = nuevoSha1();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = catalogo.openStream()) {
+            int n;
+            while((n = in.read(buffer)) >= 0){
+                md.update(buffer, 0, n);
+            }
+        }
+        return md.digest();
+    }
+
+    private Path ficheroIndice(URL catalogo){
+        return directorio.resolve("catalogo-" + hex(sha1(catalogo.toExternalForm().getBytes(StandardCharsets.UTF_8))).substring(0, 16) + ".idx");
+    }
+
+    /**
+     * Convierte la imagen a ARGB reduciéndola si supera el tamaño máximo.
+     */
+    private static BufferedImage escalar(ImageIcon icono) throws IOException {
+        if(icono == null || icono.getIconWidth() <= 0){
+            throw new IOException("Imagen no válida.");
+        }
+        int ancho = icono.getIconWidth();
+        int alto = icono.getIconHeight();
+        double escala = Math.min(1.0, Math.min((double) ANCHO_MAX / ancho, (double) ALTO_MAX / alto));
+        ancho = Math.max(1, (int) Math.round(ancho * escala));
+        alto = Math.max(1, (int) Math.round(alto * escala));
+
+        BufferedImage img = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(icono.getImage(), 0, 0, ancho, alto, null);
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * Hash del contenido de la comida: datos y píxeles ya escalados.
+     */
+    private static String hash(Comida c, BufferedImage img){
+        MessageDigest md = nuevoSha1();
+        md.update(c.getNombre().getBytes(StandardCharsets.UTF_8));
+        ByteBuffer b = ByteBuffer.allocate(4 * Math.max(4, img.getWidth()));
+        b.putInt(c.getTiempoIdeal()).putInt(c.getMargen()).putInt(img.getWidth()).putInt(img.getHeight());
+        md.update(b.array(), 0, 16);
+        int[] pixeles = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        for(int y = 0; y < img.getHeight(); y++){
+            b.clear();
+            b.asIntBuffer().put(pixeles, y * img.getWidth(), img.getWidth());
+            md.update(b.array(), 0, 4 * img.getWidth());
+        }
+        return hex(md.digest());
+    }
+
+    /**
+     * Escribe la imagen como ancho, alto y píxeles ARGB.
+     */
+    private static void escribirRaster(BufferedImage img, Path destino) throws IOException {
+        int[] pixeles = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        ByteBuffer b = ByteBuffer.allocate(8 + 4 * pixeles.length);
+        b.putInt(img.getWidth()).putInt(img.getHeight());
+        b.asIntBuffer().put(pixeles);
+        b.rewind();
+        Path temporal = Files.createTempFile(destino.getParent(), "raster", ".tmp");
+        try {
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                while(b.hasRemaining()){
+                    canal.write(b);
+                }
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private static byte[] sha1(byte[] datos){
+        return nuevoSha1().digest(datos);
+    }
+
+    private static MessageDigest nuevoSha1(){
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            // Todas las JVM deben tener SHA-1
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String hex(byte[] datos){
+        StringBuilder sb = new StringBuilder(datos.length * 2);
+        for(byte d : datos){
+            sb.append(Character.forDigit((d >> 4) & 0xF, 16)).append(Character.forDigit(d & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Imagen leída de la caché: se proyecta el fichero y se copian los píxeles
+     * directamente al raster, sin decodificar nada.
+     */
+    private static class ImagenCacheada implements FuenteImagen {
+        private final Path raster;
+
+        ImagenCacheada(Path raster) {
+            this.raster = raster;
+        }
+
+        @Override
+        public ImageIcon decodificar() {
+            try (FileChannel canal = FileChannel.open(raster, StandardOpenOption.READ)) {
+                MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+                int ancho = mapa.getInt();
+                int alto = mapa.getInt();
+                if(ancho <= 0 || alto <= 0 || (long) ancho * alto * 4 != mapa.remaining()){
+                    throw new IOException("Tamaño no válido.");
+                }
+                BufferedImage img = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_ARGB);
+                mapa.asIntBuffer().get(((DataBufferInt) img.getRaster().getDataBuffer()).getData());
+                return new ImageIcon((Image) img);
+            } catch (IOException ex) {
+                System.out.println("[!] Error al leer la imagen cacheada " + raster.getFileName() + ": " + ex.getMessage());
+                return null;
+            }
+        }
+    }
+}
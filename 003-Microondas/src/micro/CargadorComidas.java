@@ -0,0 +1,145 @@
+package micro;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Carga el catálogo de comidas en segundo plano.
+ *
+ * Un hilo lector separa los registros del fichero de texto y copia el texto
+ * Base64 de cada imagen, sin decodificarlo (ver {@link LectorComidas}). Un
+ * ForkJoinPool decodifica en paralelo el Base64 de cada una, crea las comidas
+ * (con las tablas de sus curvas) y decodifica los PNG de las primeras. La
+ * lista final respeta el orden del catálogo. Mientras tanto se va avisando del
+ * progreso para que la interfaz pueda mostrarse sin esperar a la carga.
+ *
+ * @author Zarkrosh
+ */
+public class CargadorComidas {
+
+    /**
+     * Recibe los avisos de la carga. Se llaman desde hilos de la carga, no
+     * desde el hilo de eventos de Swing.
+     */
+    public interface Progreso {
+        /**
+         * @param cargadas Comidas decodificadas hasta ahora
+         */
+        void actualizar(int cargadas);
+
+        /**
+         * @param comidas Comidas en el orden del catálogo
+         */
+        void terminado(ArrayList<Comida> comidas);
+
+        /**
+         * @param mensaje Descripción del error
+         */
+        void error(String mensaje);
+    }
+
+    private final ForkJoinPool pool;
+    private final int precargar;
+
+    public CargadorComidas() {
+        this(ForkJoinPool.commonPool(), ImagenPerezosa.CAPACIDAD_RECIENTES);
+    }
+
+    /**
+     * @param pool Pool donde se decodifican las imágenes
+     * @param precargar Número de primeras comidas cuya imagen se deja ya decodificada
+     */
+    public CargadorComidas(ForkJoinPool pool, int precargar) {
+        this.pool = pool;
+        this.precargar = precargar;
+    }
+
+    /**
+     * Inicia la carga de un catálogo de texto en un hilo aparte.
+     * @param url Catálogo a cargar
+     * @param progreso Avisos de la carga
+     */
+    public void cargarTexto(final URL url, final Progreso progreso){
+        Thread lector = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (InputStream is = url.openStream()) {
+                    progreso.terminado(leerTexto(is, progreso));
+                } catch (IOException ex) {
+                    progreso.error("Error al leer el archivo \"" + url.getFile() + "\": " + ex.getMessage());
+                }
+            }
+        }, "lector-comidas");
+        lector.setDaemon(true);
+        lector.start();
+    }
+
+    /**
+     * Lee un catálogo de texto creando las comidas en paralelo.
+     * Bloquea hasta que todas las comidas están listas.
+     * @param is Catálogo
+     * @param progreso Avisos de la carga (puede ser null)
+     * @return Comidas en el orden del catálogo
+     * @throws IOException Si falla la lectura
+     */
+    public ArrayList<Comida> leerTexto(InputStream is, final Progreso progreso) throws IOException {
+        ArrayList<CompletableFuture<Comida>> pendientes = new ArrayList<>();
+        final AtomicInteger cargadas = new AtomicInteger();
+
+        LectorComidas lector = new LectorComidas(is);
+        lector.setDecodificarImagen(false);
+        while(lector.siguiente()){
+            // El lector solo separa los campos; el Base64, la comida y el PNG
+            // de las primeras se hacen en el pool
+            final String nombre = lector.getNombre();
+            final int tiempo = lector.getTiempo();
+            final int margen = lector.getMargen();
+            final String curva = lector.getCurva();
+            final String programa = lector.getPrograma();
+            final byte[] base64 = lector.copiarBase64();
+            final int registro = lector.getRegistro();
+            final boolean decodificar = pendientes.size() < precargar;
+            pendientes.add(CompletableFuture.supplyAsync(() -> {
+                byte[] png;
+                try {
+                    png = LectorComidas.decodificarBase64(base64, registro);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                Comida c = new Comida(nombre, tiempo, margen, new ImagenPNG(png), curva, programa);
+                if(decodificar){
+                    c.getImagen();
+                }
+                int n = cargadas.incrementAndGet();
+                if(progreso != null){
+                    progreso.actualizar(n);
+                }
+                return c;
+            }, pool));
+        }
+
+        // Recoge los resultados en orden
+        ArrayList<Comida> comidas = new ArrayList<>(pendientes.size());
+        try {
+            for(CompletableFuture<Comida> f : pendientes){
+                comidas.add(f.join());
+            }
+        } catch (CompletionException ex) {
+            if(ex.getCause() instanceof UncheckedIOException){
+                throw ((UncheckedIOException) ex.getCause()).getCause();
+            }
+            if(ex.getCause() instanceof RuntimeException){
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+        return comidas;
+    }
+}
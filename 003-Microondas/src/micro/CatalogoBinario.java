@@ -0,0 +1,272 @@
+package micro;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.ImageIcon;
+
+/**
+ * Catálogo de comidas en formato binario con índice en la cabecera.
+ *
+ * Formato (big endian):
+ *   int    mágico ("CMDB")
+ *   int    versión
+ *   int    número de comidas
+ *   Por cada comida (índice):
+ *     UTF    nombre
+ *     int    tiempo ideal
+ *     int    margen
+ *     long   posición de la imagen desde el inicio del fichero
+ *     int    longitud de la imagen
+ *     UTF    curva de cocción, vacía si no tiene (desde la versión 2)
+ *     UTF    programa de cocción, vacío si no tiene (desde la versión 3)
+ *   Imágenes PNG una detrás de otra.
+ *
+ * Al abrirlo solo se lee el índice. Las imágenes se leen cuando se piden: si el
+ * catálogo es un fichero se proyecta en memoria, y si está dentro del jar se
+ * vuelve a abrir el recurso y se salta hasta la imagen.
+ *
+ * @author Zarkrosh
+ */
+public class CatalogoBinario {
+    static final int MAGICO = 0x434D4442;
+    static final int VERSION = 3;
+
+    private final URL origen;
+    private final ByteBuffer datos;
+
+    private final String[] nombres;
+    private final int[] tiempos;
+    private final int[] margenes;
+    private final long[] posiciones;
+    private final int[] longitudes;
+    private final String[] curvas;
+    private final String[] programas;
+
+    private CatalogoBinario(URL origen, ByteBuffer datos, DataInputStream in) throws IOException {
+        this.origen = origen;
+        this.datos = datos;
+        if(in.readInt() != MAGICO){
+            throw new IOException("No es un catálogo binario de comidas.");
+        }
+        int version = in.readInt();
+        if(version < 1 || version > VERSION){
+            throw new IOException("Versión de catálogo no soportada: " + version);
+        }
+        int n = in.readInt();
+        if(n < 0){
+            throw new IOException("Número de comidas no válido: " + n);
+        }
+        nombres = new String[n];
+        tiempos = new int[n];
+        margenes = new int[n];
+        posiciones = new long[n];
+        longitudes = new int[n];
+        curvas = new String[n];
+        programas = new String[n];
+        for(int i = 0; i < n; i++){
+            nombres[i] = in.readUTF();
+            tiempos[i] = in.readInt();
+            margenes[i] = in.readInt();
+            posiciones[i] = in.readLong();
+            longitudes[i] = in.readInt();
+            curvas[i] = version >= 2 ? in.readUTF() : null;
+            programas[i] = version >= 3 ? in.readUTF() : null;
+        }
+    }
+
+    /**
+     * Abre un catálogo guardado en un fichero proyectándolo en memoria.
+     * @param fichero Ruta del catálogo
+     * @return Catálogo con el índice cargado
+     * @throws IOException Si no se puede leer o el formato no es válido
+     */
+    public static CatalogoBinario abrir(Path fichero) throws IOException {
+        MappedByteBuffer mapa;
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        return new CatalogoBinario(null, mapa, new DataInputStream(new ByteBufferInputStream(mapa.duplicate())));
+    }
+
+    /**
+     * Abre un catálogo a partir de su URL (p.ej. un recurso del jar).
+     * Si apunta a un fichero se proyecta en memoria.
+     * @param url Localización del catálogo
+     * @return Catálogo con el índice cargado
+     * @throws IOException Si no se puede leer o el formato no es válido
+     */
+    public static CatalogoBinario abrir(URL url) throws IOException {
+        if("file".equals(url.getProtocol())){
+            try {
+                return abrir(Paths.get(url.toURI()));
+            } catch (URISyntaxException ex) {
+                // Se lee como un recurso cualquiera
+            }
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(url.openStream()))) {
+            return new CatalogoBinario(url, null, in);
+        }
+    }
+
+    /**
+     * @return Número de comidas del catálogo
+     */
+    public int tamano(){
+        return nombres.length;
+    }
+
+    /**
+     * Devuelve los bytes PNG de la imagen de una comida.
+     * @param i Índice de la comida
+     * @return Buffer de solo lectura con la imagen
+     * @throws IOException Si no se puede leer la imagen
+     */
+    public ByteBuffer leerImagen(int i) throws IOException {
+        if(datos != null){
+            ByteBuffer b = datos.duplicate();
+            b.position((int) posiciones[i]);
+            b.limit((int) posiciones[i] + longitudes[i]);
+            return b.slice().asReadOnlyBuffer();
+        }
+
+        byte[] imagen = new byte[longitudes[i]];
+        try (DataInputStream in = new DataInputStream(origen.openStream())) {
+            long saltar = posiciones[i];
+            while(saltar > 0){
+                long s = in.skip(saltar);
+                if(s <= 0){
+                    throw new IOException("Catálogo truncado.");
+                }
+                saltar -= s;
+            }
+            in.readFully(imagen);
+        }
+        return ByteBuffer.wrap(imagen).asReadOnlyBuffer();
+    }
+
+    /**
+     * Crea las comidas del catálogo sin decodificar ninguna imagen.
+     * @return Lista de comidas en el orden del catálogo
+     */
+    public ArrayList<Comida> cargarComidas(){
+        ArrayList<Comida> comidas = new ArrayList<>(nombres.length);
+        for(int i = 0; i < nombres.length; i++){
+            final int indice = i;
+            comidas.add(new Comida(nombres[i], tiempos[i], margenes[i], new FuenteImagen() {
+                @Override
+                public ImageIcon decodificar() {
+                    try {
+                        ByteBuffer b = leerImagen(indice);
+                        byte[] png = new byte[b.remaining()];
+                        b.get(png);
+                        return new ImageIcon(png);
+                    } catch (IOException ex) {
+                        System.out.println("[!] Error al leer la imagen de \"" + nombres[indice] + "\".");
+                        return null;
+                    }
+                }
+            }, curvas[i], programas[i]));
+        }
+        return comidas;
+    }
+
+    /**
+     * Escribe un catálogo binario.
+     * @param comidas Comidas (se usan nombre, tiempos, curva y programa de cocción)
+     * @param imagenes Bytes PNG de cada comida, en el mismo orden
+     * @param out Destino del catálogo
+     * @throws IOException Si falla la escritura
+     */
+    public static void escribir(List<Comida> comidas, List<byte[]> imagenes, OutputStream out) throws IOException {
+        if(comidas.size() != imagenes.size()){
+            throw new IllegalArgumentException("Cada comida necesita su imagen.");
+        }
+        // Calcula el tamaño de la cabecera para conocer las posiciones
+        long cabecera = 12;
+        for(Comida c : comidas){
+            cabecera += 2 + longitudUTF(c.getNombre()) + 4 + 4 + 8 + 4 + 2 + longitudUTF(curva(c)) + 2 + longitudUTF(programa(c));
+        }
+
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(MAGICO);
+        dos.writeInt(VERSION);
+        dos.writeInt(comidas.size());
+        long posicion = cabecera;
+        for(int i = 0; i < comidas.size(); i++){
+            Comida c = comidas.get(i);
+            dos.writeUTF(c.getNombre());
+            dos.writeInt(c.getTiempoIdeal());
+            dos.writeInt(c.getMargen());
+            dos.writeLong(posicion);
+            dos.writeInt(imagenes.get(i).length);
+            dos.writeUTF(curva(c));
+            dos.writeUTF(programa(c));
+            posicion += imagenes.get(i).length;
+        }
+        for(byte[] imagen : imagenes){
+            dos.write(imagen);
+        }
+        dos.flush();
+    }
+
+    private static String curva(Comida c){
+        String curva = c.getDefinicionCurva();
+        return curva == null ? "" : curva;
+    }
+
+    private static String programa(Comida c){
+        String programa = c.getDefinicionPrograma();
+        return programa == null ? "" : programa;
+    }
+
+    /**
+     * Longitud en bytes de una cadena codificada con writeUTF (sin los 2 bytes de longitud).
+     */
+    private static int longitudUTF(String s) throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        new DataOutputStream(b).writeUTF(s);
+        return b.size() - 2;
+    }
+
+    /**
+     * Permite leer el índice directamente del buffer proyectado (y las imágenes
+     * de {@link CatalogoDirectorio}).
+     */
+    static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer){
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if(!buffer.hasRemaining()){
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package micro;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * Catálogo de comidas en un directorio: un manifiesto de texto pequeño y las
+ * imágenes tal cual, cada una en su fichero (sin Base64).
+ *
+ * Formato del manifiesto (UTF-8), una comida por línea con los campos
+ * separados por tabuladores:
+ * <pre>
+ *   nombre  tiempo  margen  imagen  [curva]  [programa]
+ * </pre>
+ * La imagen es una ruta relativa al manifiesto; la curva y el programa son
+ * opcionales (ver {@link CurvaCoccion} y {@link ProgramaCoccion}). Las líneas
+ * vacías y las que empiezan por '#' se ignoran.
+ *
+ * Al abrirlo solo se lee el manifiesto. Cada imagen se decodifica cuando se
+ * pide: se proyecta el fichero en memoria y el decodificador lee directamente
+ * del buffer, sin copiarlo antes a un array.
+ *
+ * El programa no incluye ningún catálogo en este formato. Se crea con
+ * {@link ConversorCatalogo} y se usa indicando su manifiesto en la propiedad
+ * "micro.catalogo" (p.ej. -Dmicro.catalogo=catalogo/comidas.lst).
+ *
+ * @author Zarkrosh
+ */
+public class CatalogoDirectorio {
+    // Directorio de las imágenes al escribir un catálogo, relativo al manifiesto
+    static final String IMAGENES = "imagenes";
+
+    private final Path directorio;      // Directorio del manifiesto
+
+    private final List<String> nombres = new ArrayList<>();
+    private final List<Integer> tiempos = new ArrayList<>();
+    private final List<Integer> margenes = new ArrayList<>();
+    private final List<String> imagenes = new ArrayList<>();
+    private final List<String> curvas = new ArrayList<>();
+    private final List<String> programas = new ArrayList<>();
+
+    private CatalogoDirectorio(Path directorio, InputStream manifiesto) throws IOException {
+        this.directorio = directorio;
+        BufferedReader br = new BufferedReader(new InputStreamReader(manifiesto, StandardCharsets.UTF_8));
+        String linea;
+        int n = 0;
+        while((linea = br.readLine()) != null){
+            n++;
+            if(linea.trim().isEmpty() || linea.startsWith("#")){
+                continue;
+            }
+            String[] campos = linea.split("\t", -1);
+            if(campos.length < 4){
+                throw new IOException("Faltan campos en la línea " + n + " del manifiesto.");
+            }
+            try {
+                nombres.add(campos[0]);
+                tiempos.add(Integer.parseInt(campos[1].trim()));
+                margenes.add(Integer.parseInt(campos[2].trim()));
+                imagenes.add(campos[3].trim());
+                String curva = campos.length > 4 && !campos[4].trim().isEmpty() ? campos[4].trim() : null;
+                String programa = campos.length > 5 && !campos[5].trim().isEmpty() ? campos[5].trim() : null;
+                if(curva != null){
+                    CurvaCoccion.compilar(curva);
+                }
+                if(programa != null){
+                    ProgramaCoccion.compilar(programa);
+                }
+                curvas.add(curva);
+                programas.add(programa);
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Formato no válido en la línea " + n + " del manifiesto: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Abre un catálogo guardado en disco.
+     * @param manifiesto Ruta del manifiesto
+     * @return Catálogo con el manifiesto leído
+     * @throws IOException Si no se puede leer o el formato no es válido
+     */
+    public static CatalogoDirectorio abrir(Path manifiesto) throws IOException {
+        try (InputStream in = Files.newInputStream(manifiesto)) {
+            return new CatalogoDirectorio(manifiesto.toAbsolutePath().getParent(), in);
+        }
+    }
+
+    /**
+     * @return Número de comidas del catálogo
+     */
+    public int tamano(){
+        return nombres.size();
+    }
+
+    /**
+     * Crea las comidas del catálogo. Las imágenes se leen la primera vez que se piden.
+     * @return Lista de comidas en el orden del manifiesto
+     */
+    public ArrayList<Comida> cargarComidas(){
+        ArrayList<Comida> comidas = new ArrayList<>(nombres.size());
+        for(int i = 0; i < nombres.size(); i++){
+            final int indice = i;
+            comidas.add(new Comida(nombres.get(i), tiempos.get(i), margenes.get(i), new FuenteImagen() {
+                @Override
+                public ImageIcon decodificar() {
+                    try {
+                        return leerImagen(indice);
+                    } catch (IOException ex) {
+                        System.out.println("[!] Error al leer la imagen de \"" + nombres.get(indice) + "\": " + ex.getMessage());
+                        return null;
+                    }
+                }
+            }, curvas.get(i), programas.get(i)));
+        }
+        return comidas;
+    }
+
+    /**
+     * Decodifica la imagen de una comida.
+     * @param i Índice de la comida
+     * @return Imagen
+     * @throws IOException Si no se puede leer o no es una imagen
+     */
+    public ImageIcon leerImagen(int i) throws IOException {
+        ByteBuffer mapa;
+        try (FileChannel canal = FileChannel.open(directorio.resolve(imagenes.get(i)), StandardOpenOption.READ)) {
+            mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        BufferedImage img = ImageIO.read(new CatalogoBinario.ByteBufferInputStream(mapa));
+        if(img == null){
+            throw new IOException("Formato de imagen no reconocido: " + imagenes.get(i));
+        }
+        return new ImageIcon(img);
+    }
+
+    /**
+     * Escribe un catálogo: el manifiesto y, en el directorio {@link #IMAGENES}
+     * a su lado, una imagen por comida.
+     * @param comidas Comidas (se usan nombre, tiempos, curva y programa de cocción)
+     * @param imagenes Bytes de la imagen de cada comida, en el mismo orden
+     * @param manifiesto Ruta del manifiesto
+     * @throws IOException Si falla la escritura
+     */
+    public static void escribir(List<Comida> comidas, List<byte[]> imagenes, Path manifiesto) throws IOException {
+        if(comidas.size() != imagenes.size()){
+            throw new IllegalArgumentException("Cada comida necesita su imagen.");
+        }
+        Path base = manifiesto.toAbsolutePath().getParent();
+        Files.createDirectories(base.resolve(IMAGENES));
+        Set<String> usados = new HashSet<>();
+        try (BufferedWriter w = Files.newBufferedWriter(manifiesto, StandardCharsets.UTF_8)) {
+            w.write("# nombre\ttiempo\tmargen\timagen\tcurva\tprograma");
+            w.newLine();
+            for(int i = 0; i < comidas.size(); i++){
+                Comida c = comidas.get(i);
+                if(c.getNombre().indexOf('\t') >= 0){
+                    throw new IOException("El nombre \"" + c.getNombre() + "\" no puede tener tabuladores.");
+                }
+                String fichero = IMAGENES + "/" + nombreFichero(c.getNombre(), usados);
+                Files.write(base.resolve(fichero), imagenes.get(i));
+                w.write(c.getNombre() + "\t" + c.getTiempoIdeal() + "\t" + c.getMargen() + "\t" + fichero + "\t"
+                        + vacio(c.getDefinicionCurva()) + "\t" + vacio(c.getDefinicionPrograma()));
+                w.newLine();
+            }
+        }
+    }
+
+    /**
+     * Nombre de fichero sin caracteres raros y distinto de los ya usados.
+     */
+    private static String nombreFichero(String nombre, Set<String> usados){
+        String base = nombre.toLowerCase().replaceAll("[^a-z0-9]+", "_");
+        if(base.isEmpty()){
+            base = "comida";
+        }
+        String fichero = base + ".png";
+        for(int n = 2; !usados.add(fichero); n++){
+            fichero = base + "_" + n + ".png";
+        }
+        return fichero;
+    }
+
+    private static String vacio(String s){
+        return s == null ? "" : s;
+    }
+}
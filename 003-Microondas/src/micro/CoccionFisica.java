@@ -0,0 +1,201 @@
+package micro;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Modo físico: decide si una comida está bien cocinada por la temperatura de
+ * su centro según un {@link SimuladorCalor}, en vez de solo por el tiempo.
+ *
+ * Al asignarle una comida se calibra la potencia del horno para ella: se simula una
+ * cocción continua y se elige el calentamiento con el que el centro llega a
+ * {@link #T_OBJETIVO} justo en el tiempo ideal. Las temperaturas del centro en
+ * ideal - margen e ideal + margen son los límites de bien cocinado. A partir de
+ * ahí lo que cuenta es la física: por ejemplo, durante una pausa el calor
+ * sigue llegando al centro.
+ *
+ * Todo el trabajo se hace en orden en un hilo aparte; los métodos solo encolan.
+ * El simulador (2·n³ floats) se crea una vez y se reutiliza para cada comida.
+ * Al asignar otra comida se descarta lo que quedara pendiente de la anterior,
+ * incluida su calibración si aún no ha terminado.
+ *
+ * @author Zarkrosh
+ */
+public class CoccionFisica {
+    // Temperatura del centro que se busca en el tiempo ideal (ºC)
+    static final float T_OBJETIVO = 75f;
+    // Redondeo admitido al comparar con los límites (ºC)
+    private static final float REDONDEO = 0.01f;
+
+    private static final ExecutorService HILO = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "calor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final SimuladorCalor sim;
+    // Cambia con cada comida asignada; el trabajo de una comida anterior se descarta
+    private final AtomicInteger generacion = new AtomicInteger();
+    private volatile Comida comida;
+    // Solo desde el hilo "calor"
+    private float tBajo;
+    private float tAlto;
+    private int calentado = 0;
+
+    /**
+     * @param tamano Celdas por lado de la rejilla
+     */
+    public CoccionFisica(int tamano) {
+        this.sim = new SimuladorCalor(tamano, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Cambia la comida simulada y la calibra. Lo que quedara pendiente de la
+     * anterior se descarta.
+     * @param comida Comida a simular
+     */
+    public void asignarComida(final Comida comida){
+        this.comida = comida;
+        final int gen = generacion.incrementAndGet();
+        HILO.execute(() -> calibrar(comida, gen));
+    }
+
+    /**
+     * Encola un trabajo de la comida actual.
+     */
+    private void encolar(final Runnable trabajo){
+        final int gen = generacion.get();
+        HILO.execute(() -> {
+            if(gen == generacion.get()){
+                trabajo.run();
+            }
+        });
+    }
+
+    public Comida getComida(){
+        return comida;
+    }
+
+    /**
+     * Empieza una cocción nueva con la comida a temperatura ambiente.
+     */
+    public void nuevaSesion(){
+        encolar(() -> {
+            sim.reiniciar(SimuladorCalor.T_AMBIENTE);
+            calentado = 0;
+        });
+    }
+
+    /**
+     * Calienta a máxima potencia hasta llevar un tiempo total de horno.
+     * @param segundos Segundos de horno desde el inicio de la sesión
+     */
+    public void calentarHasta(int segundos){
+        calentarHasta(segundos, null);
+    }
+
+    /**
+     * Calienta siguiendo un programa hasta llevar un tiempo total de horno.
+     * @param segundos Segundos de horno desde el inicio de la sesión
+     * @param programa Programa con la potencia de cada fase, o null para máxima potencia
+     */
+    public void calentarHasta(final int segundos, final ProgramaCoccion programa){
+        encolar(() -> {
+            while(calentado < segundos){
+                int hasta = segundos;
+                float potencia = 1f;
+                if(programa != null){
+                    int f = programa.fase(calentado);
+                    if(f < programa.getFases()){
+                        hasta = Math.min(segundos, programa.getFin(f));
+                        potencia = programa.getPotencia(f) / 100f;
+                    }
+                }
+                sim.avanzar(hasta - calentado, potencia);
+                calentado = hasta;
+            }
+        });
+    }
+
+    /**
+     * Deja reposar la comida con el horno parado.
+     * @param segundos Segundos de reposo
+     */
+    public void reposar(final int segundos){
+        if(segundos > 0){
+            encolar(() -> sim.avanzar(segundos, 0f));
+        }
+    }
+
+    /**
+     * Evalúa la comida cuando se haya simulado todo lo pedido antes.
+     * @return {resultado (ver constantes de Comida), punto en décimas de %}
+     */
+    public CompletableFuture<int[]> evaluar(){
+        final Comida evaluada = comida;
+        return CompletableFuture.supplyAsync(() -> {
+            float centro = sim.getTemperaturaCentro();
+            int resultado;
+            if(centro < tBajo - REDONDEO){
+                resultado = Comida.COCINADO_POCO;
+            }else if(centro > tAlto + REDONDEO){
+                resultado = Comida.COCINADO_MUCHO;
+            }else{
+                resultado = Comida.COCINADO_BIEN;
+            }
+            int punto = Math.max(0, Math.round(1000 * (centro - SimuladorCalor.T_AMBIENTE) / (T_OBJETIVO - SimuladorCalor.T_AMBIENTE)));
+            System.out.printf("Centro de %s: %.1f ºC (bien entre %.1f y %.1f)%n", evaluada.getNombre(), centro, tBajo, tAlto);
+            return new int[]{ resultado, punto };
+        }, HILO);
+    }
+
+    /**
+     * Como el calor se propaga de forma lineal y la comida empieza a la
+     * temperatura del aire, el aumento de temperatura es proporcional al
+     * calentamiento: basta una simulación con calentamiento 1 para calibrar.
+     * Se abandona en cuanto se asigna otra comida.
+     */
+    private void calibrar(Comida comida, int gen){
+        int ideal = comida.getTiempoIdeal();
+        int bajo = Math.max(0, ideal - comida.getMargen());
+        int alto = ideal + Math.max(0, comida.getMargen());
+        sim.reiniciar(SimuladorCalor.T_AMBIENTE);
+        sim.setCalentamiento(1f);
+        if(!avanzarCalibrando(bajo, gen)){
+            return;
+        }
+        float gBajo = sim.getTemperaturaCentro() - SimuladorCalor.T_AMBIENTE;
+        if(!avanzarCalibrando(ideal - bajo, gen)){
+            return;
+        }
+        float gIdeal = sim.getTemperaturaCentro() - SimuladorCalor.T_AMBIENTE;
+        if(!avanzarCalibrando(alto - ideal, gen)){
+            return;
+        }
+        float gAlto = sim.getTemperaturaCentro() - SimuladorCalor.T_AMBIENTE;
+
+        float calentamiento = gIdeal > 0 ? (T_OBJETIVO - SimuladorCalor.T_AMBIENTE) / gIdeal : 1f;
+        sim.setCalentamiento(calentamiento);
+        tBajo = SimuladorCalor.T_AMBIENTE + calentamiento * gBajo;
+        tAlto = SimuladorCalor.T_AMBIENTE + calentamiento * gAlto;
+        sim.reiniciar(SimuladorCalor.T_AMBIENTE);
+        calentado = 0;
+    }
+
+    /**
+     * Avanza la calibración segundo a segundo.
+     * @return false si se ha asignado otra comida entretanto
+     */
+    private boolean avanzarCalibrando(int segundos, int gen){
+        for(int i = 0; i < segundos; i++){
+            if(gen != generacion.get()){
+                return false;
+            }
+            sim.avanzar(1, 1f);
+        }
+        return gen == generacion.get();
+    }
+}
@@ -0,0 +1,416 @@
+package micro;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Cola de comidas para un microondas compartido: cada persona deja su comida
+ * con el tiempo que quiere y el horno las va cocinando una detrás de otra.
+ *
+ * El orden lo decide una {@link Politica}: por orden de llegada
+ * ({@link #fifo()}), primero la de menor tiempo ideal
+ * ({@link #masCortoPrimero()}) o repartiendo el horno entre personas
+ * ({@link #reparto()}). Cada trabajo se cocina con una {@link CuentaAtras}
+ * sobre el reloj que se indique, así que no hay hilos propios y con un
+ * {@link RelojVirtual} se puede reproducir una cola entera sin esperar.
+ *
+ * Guarda la espera (desde que llega hasta que entra al horno) y el tiempo de
+ * respuesta (hasta que sale) de cada trabajo en {@link HistogramaLog}s en
+ * milisegundos del reloj.
+ *
+ * @author Zarkrosh
+ */
+public class ColaCoccion {
+
+    /**
+     * Orden en que se cocinan los trabajos pendientes. No necesita ser segura
+     * para varios hilos: la cola la usa siempre bloqueada.
+     */
+    public interface Politica {
+        void encolar(Trabajo t);
+
+        /**
+         * @return Siguiente trabajo a cocinar (y lo quita), o null si no hay
+         */
+        Trabajo siguiente();
+
+        int tamano();
+    }
+
+    /**
+     * Avisos de la cola. Se llaman desde el hilo del reloj (o desde el que
+     * encola si el horno estaba libre).
+     */
+    public interface Oyente {
+        void empieza(Trabajo t);
+
+        void termina(Trabajo t);
+    }
+
+    /**
+     * Una comida que espera o se está cocinando. Los instantes son del reloj
+     * de la cola (ns).
+     */
+    public static final class Trabajo {
+        final long id;
+        final String usuario;
+        final Comida comida;
+        final int segundos;
+        final long llegada;
+        long inicio = -1;
+        long fin = -1;
+
+        Trabajo(long id, String usuario, Comida comida, int segundos, long llegada) {
+            this.id = id;
+            this.usuario = usuario;
+            this.comida = comida;
+            this.segundos = segundos;
+            this.llegada = llegada;
+        }
+
+        public long getId(){
+            return id;
+        }
+
+        public String getUsuario(){
+            return usuario;
+        }
+
+        public Comida getComida(){
+            return comida;
+        }
+
+        public int getSegundos(){
+            return segundos;
+        }
+
+        public long getLlegada(){
+            return llegada;
+        }
+
+        /**
+         * @return Instante en que entró al horno, o -1 si sigue esperando
+         */
+        public long getInicio(){
+            return inicio;
+        }
+
+        /**
+         * @return Instante en que salió del horno, o -1 si no ha terminado
+         */
+        public long getFin(){
+            return fin;
+        }
+    }
+
+    private static final long NANOS_MILI = 1000000L;
+
+    private final Politica politica;
+    private final Reloj reloj;
+    private final long milisPorSegundo;
+    private final Oyente oyente;
+    private final CuentaAtras cuenta;
+    private long siguienteId = 0;
+    private Trabajo enCurso = null;
+
+    // Métricas
+    private final HistogramaLog espera = new HistogramaLog();
+    private final HistogramaLog respuesta = new HistogramaLog();
+    private long esperaTotal = 0;
+    private long completados = 0;
+    private long primeraLlegada = -1;
+    private long ultimoFin = -1;
+
+    /**
+     * @param politica Orden de los trabajos
+     * @param reloj Reloj del horno
+     * @param milisPorSegundo Duración de un segundo de cocinado en el reloj
+     * @param oyente Avisos de inicio y fin, o null
+     */
+    public ColaCoccion(Politica politica, Reloj reloj, long milisPorSegundo, Oyente oyente) {
+        this.politica = politica;
+        this.reloj = reloj;
+        this.milisPorSegundo = milisPorSegundo;
+        this.oyente = oyente;
+        this.cuenta = new CuentaAtras(new CuentaAtras.Oyente() {
+            @Override
+            public void tick(int minutos, int segundos) {
+            }
+
+            @Override
+            public void finalizado() {
+                terminado();
+            }
+        }, reloj);
+    }
+
+    /**
+     * Deja una comida en la cola. Si el horno está libre empieza en el acto.
+     * @param usuario Quién la deja (lo usa {@link #reparto()})
+     * @param comida Comida
+     * @param segundos Tiempo de cocinado, o 0 para usar el ideal de la comida
+     * @return Trabajo creado
+     */
+    public Trabajo encolar(String usuario, Comida comida, int segundos){
+        if(segundos <= 0){
+            segundos = comida.getTiempoIdeal();
+        }
+        segundos = Math.min(segundos, CurvaCoccion.TIEMPO_MAX);
+        Trabajo t;
+        Trabajo empieza = null;
+        synchronized(this){
+            long ahora = reloj.nanos();
+            t = new Trabajo(siguienteId++, usuario, comida, segundos, ahora);
+            if(primeraLlegada < 0){
+                primeraLlegada = ahora;
+            }
+            politica.encolar(t);
+            if(enCurso == null){
+                empieza = arrancar();
+            }
+        }
+        avisar(null, empieza);
+        return t;
+    }
+
+    /**
+     * @return Trabajos esperando (sin contar el que está en el horno)
+     */
+    public synchronized int getPendientes(){
+        return politica.tamano();
+    }
+
+    public synchronized Trabajo getEnCurso(){
+        return enCurso;
+    }
+
+    public synchronized long getCompletados(){
+        return completados;
+    }
+
+    /**
+     * @return Copia del histograma de esperas (ms)
+     */
+    public synchronized HistogramaLog getEspera(){
+        HistogramaLog h = new HistogramaLog();
+        h.sumar(espera);
+        return h;
+    }
+
+    /**
+     * @return Copia del histograma de tiempos de respuesta (ms)
+     */
+    public synchronized HistogramaLog getRespuesta(){
+        HistogramaLog h = new HistogramaLog();
+        h.sumar(respuesta);
+        return h;
+    }
+
+    /**
+     * @return Espera media de los trabajos que ya han entrado al horno (ms)
+     */
+    public synchronized double getEsperaMedia(){
+        return espera.getTotal() == 0 ? 0 : (double) esperaTotal / espera.getTotal();
+    }
+
+    /**
+     * @return Trabajos terminados por hora de reloj, desde la primera llegada
+     *         hasta el último terminado
+     */
+    public synchronized double getRendimiento(){
+        if(completados == 0 || ultimoFin <= primeraLlegada){
+            return 0;
+        }
+        return completados * 3600e9 / (ultimoFin - primeraLlegada);
+    }
+
+    /**
+     * Saca el siguiente trabajo y lo pone en el horno. Con la cola bloqueada.
+     * @return Trabajo que empieza, o null si no quedan
+     */
+    private Trabajo arrancar(){
+        Trabajo t = politica.siguiente();
+        enCurso = t;
+        if(t == null){
+            return null;
+        }
+        t.inicio = reloj.nanos();
+        long ms = (t.inicio - t.llegada) / NANOS_MILI;
+        espera.registrar(ms);
+        esperaTotal += ms;
+        cuenta.fijar(t.segundos);
+        cuenta.iniciar(milisPorSegundo);
+        return t;
+    }
+
+    /**
+     * La cuenta ha llegado a cero (hilo del reloj).
+     */
+    private void terminado(){
+        Trabajo termina;
+        Trabajo empieza;
+        synchronized(this){
+            termina = enCurso;
+            if(termina == null){
+                return;
+            }
+            termina.fin = reloj.nanos();
+            respuesta.registrar((termina.fin - termina.llegada) / NANOS_MILI);
+            completados++;
+            ultimoFin = termina.fin;
+            empieza = arrancar();
+        }
+        avisar(termina, empieza);
+    }
+
+    private void avisar(Trabajo termina, Trabajo empieza){
+        if(oyente == null){
+            return;
+        }
+        if(termina != null){
+            oyente.termina(termina);
+        }
+        if(empieza != null){
+            oyente.empieza(empieza);
+        }
+    }
+
+    /**
+     * @return Política por orden de llegada
+     */
+    public static Politica fifo(){
+        return new Politica() {
+            private final ArrayDeque<Trabajo> cola = new ArrayDeque<>();
+
+            @Override
+            public void encolar(Trabajo t) {
+                cola.addLast(t);
+            }
+
+            @Override
+            public Trabajo siguiente() {
+                return cola.pollFirst();
+            }
+
+            @Override
+            public int tamano() {
+                return cola.size();
+            }
+        };
+    }
+
+    /**
+     * Primero la comida con menor tiempo ideal (a igualdad, la que llegó antes).
+     * Se ordena por el tiempo ideal del catálogo y no por el marcado para que
+     * no se pueda colar nadie marcando menos.
+     * @return Política del trabajo más corto primero
+     */
+    public static Politica masCortoPrimero(){
+        return new Politica() {
+            private final PriorityQueue<Trabajo> cola = new PriorityQueue<>((a, b) -> {
+                int c = Integer.compare(a.comida.getTiempoIdeal(), b.comida.getTiempoIdeal());
+                return c != 0 ? c : Long.compare(a.id, b.id);
+            });
+
+            @Override
+            public void encolar(Trabajo t) {
+                cola.add(t);
+            }
+
+            @Override
+            public Trabajo siguiente() {
+                return cola.poll();
+            }
+
+            @Override
+            public int tamano() {
+                return cola.size();
+            }
+        };
+    }
+
+    /**
+     * Reparto justo: entra la comida de la persona que menos tiempo de horno
+     * ha usado entre las que tienen algo esperando; las de una misma persona
+     * van por orden de llegada. Quien llega nuevo empieza con el uso mínimo de
+     * los que esperan, para que no acapare el horno por no haberlo usado antes.
+     * @return Política de reparto entre personas
+     */
+    public static Politica reparto(){
+        return new Politica() {
+            private final Map<String, ArrayDeque<Trabajo>> colas = new HashMap<>();
+            private final Map<String, Long> uso = new HashMap<>();
+            private int tamano = 0;
+
+            @Override
+            public void encolar(Trabajo t) {
+                ArrayDeque<Trabajo> cola = colas.get(t.usuario);
+                if(cola == null){
+                    colas.put(t.usuario, cola = new ArrayDeque<>());
+                    long minimo = 0;
+                    boolean hay = false;
+                    for(String u : colas.keySet()){
+                        Long usado = uso.get(u);
+                        if(usado != null && !colas.get(u).isEmpty()){
+                            minimo = hay ? Math.min(minimo, usado) : usado;
+                            hay = true;
+                        }
+                    }
+                    Long usado = uso.get(t.usuario);
+                    uso.put(t.usuario, Math.max(usado == null ? 0 : usado, minimo));
+                }
+                cola.addLast(t);
+                tamano++;
+            }
+
+            @Override
+            public Trabajo siguiente() {
+                String elegido = null;
+                long menor = Long.MAX_VALUE;
+                for(Map.Entry<String, ArrayDeque<Trabajo>> e : colas.entrySet()){
+                    long usado = uso.get(e.getKey());
+                    // A igualdad de uso, el que lleva más esperando
+                    if(usado < menor || (usado == menor && e.getValue().peekFirst().id < colas.get(elegido).peekFirst().id)){
+                        menor = usado;
+                        elegido = e.getKey();
+                    }
+                }
+                if(elegido == null){
+                    return null;
+                }
+                ArrayDeque<Trabajo> cola = colas.get(elegido);
+                Trabajo t = cola.pollFirst();
+                if(cola.isEmpty()){
+                    colas.remove(elegido);
+                }
+                uso.put(elegido, menor + t.segundos);
+                tamano--;
+                return t;
+            }
+
+            @Override
+            public int tamano() {
+                return tamano;
+            }
+        };
+    }
+
+    /**
+     * @param nombre "fifo", "sjf" o "reparto"
+     * @return Política correspondiente
+     */
+    static Politica politica(String nombre){
+        switch(nombre.toLowerCase()){
+            case "fifo":
+                return fifo();
+            case "sjf":
+                return masCortoPrimero();
+            case "reparto":
+                return reparto();
+            default:
+                throw new IllegalArgumentException("Política desconocida: " + nombre + " (fifo, sjf, reparto)");
+        }
+    }
+}
@@ -14,42 +14,142 @@ public class Comida {
     private final String nombre;
     private final int tiempoIdeal;
     private final int margen;
-    private final ImageIcon imagen;
+    private final ImagenPerezosa imagen;
+    private final CurvaCoccion curva;
+    private final ProgramaCoccion programa;
 
-    public Comida(String nombre, int tiempoIdeal, int margen, ImageIcon imagen) {
+    public Comida(String nombre, int tiempoIdeal, int margen, final ImageIcon imagen) {
+        this(nombre, tiempoIdeal, margen, new FuenteImagen() {
+            @Override
+            public ImageIcon decodificar() {
+                return imagen;
+            }
+        });
+    }
+    
+    /**
+     * Crea una comida cuya imagen se decodifica la primera vez que se pide.
+     * @param nombre Nombre de la comida
+     * @param tiempoIdeal Tiempo ideal de cocinado (segundos)
+     * @param margen Margen admitido (segundos)
+     * @param fuente Origen de la imagen
+     */
+    public Comida(String nombre, int tiempoIdeal, int margen, FuenteImagen fuente) {
+        this(nombre, tiempoIdeal, margen, fuente, null);
+    }
+
+    /**
+     * Crea una comida con su curva de cocción.
+     * @param nombre Nombre de la comida
+     * @param tiempoIdeal Tiempo ideal de cocinado (segundos)
+     * @param margen Margen admitido (segundos)
+     * @param fuente Origen de la imagen
+     * @param curva Definición de la curva de cocción (ver {@link CurvaCoccion}),
+     *              o null para usar la del tiempo ideal y el margen
+     * @throws IllegalArgumentException Si la curva no es válida
+     */
+    public Comida(String nombre, int tiempoIdeal, int margen, FuenteImagen fuente, String curva) {
+        this(nombre, tiempoIdeal, margen, fuente, curva, null);
+    }
+
+    /**
+     * Crea una comida con su curva y su programa de cocción.
+     * @param nombre Nombre de la comida
+     * @param tiempoIdeal Tiempo ideal de cocinado (segundos)
+     * @param margen Margen admitido (segundos)
+     * @param fuente Origen de la imagen
+     * @param curva Definición de la curva de cocción, o null
+     * @param programa Definición del programa de cocción (ver {@link ProgramaCoccion}),
+     *                 o null si se cocina marcando el tiempo a mano
+     * @throws IllegalArgumentException Si la curva o el programa no son válidos
+     */
+    public Comida(String nombre, int tiempoIdeal, int margen, FuenteImagen fuente, String curva, String programa) {
         this.nombre = nombre;
         this.tiempoIdeal = tiempoIdeal;
         this.margen = margen;
-        this.imagen = imagen;
+        this.imagen = new ImagenPerezosa(fuente);
+        this.curva = (curva == null || curva.isEmpty()) ? CurvaCoccion.porDefecto(tiempoIdeal, margen) : CurvaCoccion.compilar(curva);
+        this.programa = (programa == null || programa.isEmpty()) ? null : ProgramaCoccion.compilar(programa);
     }
 
     public String getNombre() {
         return nombre;
     }
     
+    public int getTiempoIdeal() {
+        return tiempoIdeal;
+    }
+
+    public int getMargen() {
+        return margen;
+    }
+    
     public ImageIcon getImagen() {
-        return imagen;
+        return imagen.getImagen();
+    }
+
+    public CurvaCoccion getCurva() {
+        return curva;
+    }
+
+    /**
+     * @return Definición de la curva de cocción, o null si es la del tiempo ideal y el margen
+     */
+    public String getDefinicionCurva() {
+        return curva.getDefinicion();
     }
     
     /**
-     * Devuelve el estado del alimento cocinado. 
-     * Se calcula mediante un tiempo ideal y un margen estipulados al crear el objeto.
+     * @return Programa de cocción, o null si no tiene
+     */
+    public ProgramaCoccion getPrograma() {
+        return programa;
+    }
+
+    /**
+     * @return Definición del programa de cocción, o null si no tiene
+     */
+    public String getDefinicionPrograma() {
+        return programa == null ? null : programa.getDefinicion();
+    }
+
+    /**
+     * Devuelve el estado del alimento cocinado a máxima potencia.
+     * Se calcula con la curva de cocción (por defecto, el tiempo ideal y el margen).
      * @param tiempo Tiempo empleado
      * @return Ver constantes
      */
     public int bienCocinado(int tiempo){
-        int res = 0;
         System.out.println(tiempo);
-        if(Math.abs(tiempo - tiempoIdeal) <= margen){
-                res = COCINADO_BIEN;
-        }else{
-            if(tiempo - tiempoIdeal < 0 ){
-                res = COCINADO_POCO;
-            }else{
-                res = COCINADO_MUCHO;
-            }
-        }
-        
-        return res;
+        return evaluar(tiempo);
+    }
+    
+    /**
+     * Igual que {@link #bienCocinado(int)} pero sin escribir nada por consola,
+     * para simulaciones con muchos hornos.
+     * @param tiempo Tiempo empleado
+     * @return Ver constantes
+     */
+    int evaluar(int tiempo){
+        return curva.resultado(CurvaCoccion.POTENCIA_MAXIMA, tiempo);
+    }
+
+    /**
+     * Estado del alimento cocinado a una potencia, sin escribir nada por consola.
+     * @param tiempo Tiempo empleado
+     * @param nivel Índice de la potencia (ver {@link CurvaCoccion#POTENCIAS})
+     * @return Ver constantes
+     */
+    int evaluar(int tiempo, int nivel){
+        return curva.resultado(nivel, tiempo);
+    }
+
+    /**
+     * @param tiempo Tiempo empleado
+     * @param nivel Índice de la potencia (ver {@link CurvaCoccion#POTENCIAS})
+     * @return Punto de cocción en décimas de % (1000 = en su punto)
+     */
+    public int getPunto(int tiempo, int nivel){
+        return curva.punto(nivel, tiempo);
     }
 }
@@ -0,0 +1,58 @@
+package micro;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * Convierte un catálogo de texto (comidas.txt, imágenes en Base64) al formato
+ * de {@link CatalogoBinario} o, si el destino acaba en ".lst", al de
+ * {@link CatalogoDirectorio}.
+ * 
+ * Uso: java micro.ConversorCatalogo comidas.txt comidas.bin
+ *      java micro.ConversorCatalogo comidas.txt comidas.lst
+ *
+ * @author Zarkrosh
+ */
+public class ConversorCatalogo {
+
+    public static void main(String[] args) {
+        if(args.length != 2){
+            System.out.println("Uso: java micro.ConversorCatalogo <comidas.txt> <comidas.bin|comidas.lst>");
+            System.exit(1);
+        }
+
+        ArrayList<Comida> comidas = new ArrayList<>();
+        ArrayList<byte[]> imagenes = new ArrayList<>();
+        try (LectorComidas lector = new LectorComidas(Files.newInputStream(Paths.get(args[0])))) {
+            while(lector.siguiente()){
+                comidas.add(new Comida(lector.getNombre(), lector.getTiempo(), lector.getMargen(), null, lector.getCurva(), lector.getPrograma()));
+                imagenes.add(lector.copiarImagen());
+            }
+        } catch (IOException ex) {
+            System.out.println("[!] Error al leer el archivo \"" + args[0] + "\": " + ex.getMessage());
+            System.exit(-1);
+        }
+
+        if(args[1].endsWith(".lst")){
+            try {
+                CatalogoDirectorio.escribir(comidas, imagenes, Paths.get(args[1]));
+            } catch (IOException ex) {
+                System.out.println("[!] Error al escribir el catálogo \"" + args[1] + "\": " + ex.getMessage());
+                System.exit(-1);
+            }
+            System.out.println("Convertidas " + comidas.size() + " comidas.");
+            return;
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(args[1])))) {
+            CatalogoBinario.escribir(comidas, imagenes, out);
+        } catch (IOException ex) {
+            System.out.println("[!] Error al escribir el archivo \"" + args[1] + "\".");
+            System.exit(-1);
+        }
+        System.out.println("Convertidas " + comidas.size() + " comidas.");
+    }
+}
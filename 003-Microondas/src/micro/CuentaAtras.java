@@ -0,0 +1,178 @@
+package micro;
+
+/**
+ * Cuenta atrás del microondas: un {@link MotorHorno} movido por un {@link Reloj}.
+ *
+ * En vez de contar ticks, el motor guarda cuánto tiempo lleva consumido y el
+ * restante se calcula a partir del reloj, así que ni las pausas ni los cambios
+ * de velocidad acumulan error. Con el reloj real todas las cuentas comparten un
+ * único hilo planificador: iniciar, pausar o cambiar de velocidad no crea hilos
+ * nuevos. Con un {@link RelojVirtual} los avisos llegan en el hilo que avanza
+ * el reloj.
+ *
+ * Los tiempos "simulados" son los que ve el usuario: en modo rápido un segundo
+ * simulado dura menos que uno real.
+ *
+ * @author Zarkrosh
+ */
+public class CuentaAtras {
+
+    /**
+     * Recibe los avisos de la cuenta. Se llaman desde el hilo del reloj.
+     */
+    public interface Oyente {
+        /**
+         * Cambia el valor mostrado.
+         * @param minutos Minutos que quedan
+         * @param segundos Segundos que quedan
+         */
+        void tick(int minutos, int segundos);
+
+        /**
+         * La cuenta ha llegado a cero.
+         */
+        void finalizado();
+    }
+
+    private final Oyente oyente;
+    private final Reloj reloj;
+    private final MotorHorno motor = new MotorHorno();
+    private int generacion = 0;         // Invalida ticks de planificaciones anteriores
+    private Reloj.Programada siguiente;
+
+    public CuentaAtras(Oyente oyente) {
+        this(oyente, RelojReal.INSTANCIA);
+    }
+
+    public CuentaAtras(Oyente oyente, Reloj reloj) {
+        this.oyente = oyente;
+        this.reloj = reloj;
+    }
+
+    public Reloj getReloj(){
+        return reloj;
+    }
+
+    /**
+     * @see MotorHorno#anadirDigito(int)
+     */
+    public synchronized boolean anadirDigito(int digito){
+        return motor.anadirDigito(digito);
+    }
+
+    /**
+     * @see MotorHorno#limpiar()
+     */
+    public synchronized boolean limpiar(){
+        return motor.limpiar();
+    }
+
+    /**
+     * @see MotorHorno#fijar(int)
+     */
+    public synchronized boolean fijar(int total){
+        return motor.fijar(total);
+    }
+
+    /**
+     * Inicia o reanuda la cuenta con el valor mostrado.
+     * @param milisPorSegundo Duración real de un segundo simulado
+     * @return true si se ha puesto en marcha
+     */
+    public synchronized boolean iniciar(long milisPorSegundo){
+        if(!motor.iniciar(reloj.nanos(), milisPorSegundo)){
+            return false;
+        }
+        planificar();
+        return true;
+    }
+
+    /**
+     * Pausa la cuenta conservando exactamente el tiempo restante.
+     */
+    public synchronized void pausar(){
+        if(motor.enMarcha()){
+            motor.pausar(reloj.nanos());
+            cancelar();
+        }
+    }
+
+    /**
+     * Cambia la velocidad sin perder el tiempo ya consumido.
+     * @param milisPorSegundo Duración real de un segundo simulado
+     */
+    public synchronized void cambiarVelocidad(long milisPorSegundo){
+        motor.cambiarVelocidad(reloj.nanos(), milisPorSegundo);
+        if(motor.enMarcha()){
+            cancelar();
+            planificar();
+        }
+    }
+
+    public synchronized boolean enMarcha(){
+        return motor.enMarcha();
+    }
+
+    public synchronized int getMinutos(){
+        return motor.getMinutos();
+    }
+
+    public synchronized int getSegundos(){
+        return motor.getSegundos();
+    }
+
+    /**
+     * @see MotorHorno#getTemporizador(long)
+     */
+    public synchronized int getTemporizador(){
+        return motor.getTemporizador(reloj.nanos());
+    }
+
+    /**
+     * @see MotorHorno#reiniciarTemporizador(long)
+     */
+    public synchronized void reiniciarTemporizador(){
+        motor.reiniciarTemporizador(reloj.nanos());
+    }
+
+    private void cancelar(){
+        generacion++;
+        if(siguiente != null){
+            siguiente.cancelar();
+            siguiente = null;
+        }
+    }
+
+    /**
+     * Programa el siguiente tick justo cuando cambie el valor mostrado.
+     */
+    private void planificar(){
+        final int gen = generacion;
+        siguiente = reloj.programar(() -> tick(gen), motor.proximoCambio(reloj.nanos()));
+    }
+
+    private void tick(int gen){
+        int estado;
+        int minutos;
+        int segundos;
+        synchronized(this){
+            if(gen != generacion || !motor.enMarcha()){
+                return;
+            }
+            estado = motor.actualizar(reloj.nanos());
+            minutos = motor.getMinutos();
+            segundos = motor.getSegundos();
+            if(estado == MotorHorno.FIN){
+                siguiente = null;
+            }else{
+                planificar();
+            }
+        }
+        if(estado != MotorHorno.SIN_CAMBIOS){
+            oyente.tick(minutos, segundos);
+        }
+        if(estado == MotorHorno.FIN){
+            oyente.finalizado();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package micro;
+
+import java.util.Arrays;
+
+/**
+ * Curva de cocción de una comida: punto de cocción según el tiempo y la potencia.
+ *
+ * El punto se mide en porcentaje del ideal (100 = en su punto). Para cada
+ * potencia se define con tramos rectos entre puntos (tiempo, punto); antes del
+ * primer punto se parte de (0, 0) y después del último se sigue con la
+ * pendiente del último tramo. Las potencias que no se definen se sacan de la
+ * más cercana escalando el tiempo (la mitad de potencia tarda el doble).
+ *
+ * Las curvas del catálogo se compilan al crearlas en tablas de 0 a
+ * {@link #TIEMPO_MAX} segundos por potencia, así que consultar el punto o el
+ * resultado es leer una posición de un array. Las curvas por defecto (tiempo
+ * ideal y margen) no se tabulan: son tres o cuatro puntos y se calculan al
+ * consultarlas, para que un catálogo grande no gaste unos 72 KB por comida.
+ *
+ * Definición en texto (línea "@..." del catálogo):
+ * <pre>
+ *   100:0=0,300=90,360=100,420=110;50:600=90,720=100,840=110
+ * </pre>
+ * La curva tiene que ser creciente: el punto nunca baja al cocinar más.
+ *
+ * @author Zarkrosh
+ */
+public final class CurvaCoccion {
+    // Potencias disponibles (%), de mayor a menor
+    static final int[] POTENCIAS = {100, 75, 50, 25};
+    static final int POTENCIA_MAXIMA = 0;
+    // Tiempo máximo que se puede marcar (99:59)
+    static final int TIEMPO_MAX = 99 * 60 + 59;
+    // Punto ideal y tolerancia para considerarlo bien cocinado (%)
+    static final int PUNTO_IDEAL = 100;
+    static final int TOLERANCIA = 10;
+    // El punto se guarda en décimas de %, hasta este valor
+    private static final int PUNTO_MAX = 9999;
+
+    private static final int ANCHO = TIEMPO_MAX + 1;
+
+    private final String definicion;
+    private final double[][] tiempos;   // Puntos de la potencia definida que usa cada potencia
+    private final double[][] valores;
+    private final double[] escalas;     // Escala de tiempo respecto a esa potencia
+    private final short[] puntos;       // [potencia * ANCHO + tiempo], décimas de %; null si no se tabula
+    private final byte[] resultados;    // [potencia * ANCHO + tiempo]; null si no se tabula
+    private final int[] bajo;           // Primer tiempo bien cocinado por potencia
+    private final int[] alto;           // Último tiempo bien cocinado por potencia
+
+    private CurvaCoccion(String definicion, double[][] tiempos, double[][] valores, boolean tabular) {
+        this.definicion = definicion;
+        int niveles = POTENCIAS.length;
+        this.tiempos = new double[niveles][];
+        this.valores = new double[niveles][];
+        escalas = new double[niveles];
+        puntos = tabular ? new short[niveles * ANCHO] : null;
+        resultados = tabular ? new byte[niveles * ANCHO] : null;
+        bajo = new int[niveles];
+        alto = new int[niveles];
+        for(int p = 0; p < niveles; p++){
+            // Potencia definida más cercana
+            int ref = p;
+            for(int d = 1; tiempos[ref] == null; d++){
+                if(p - d >= 0 && tiempos[p - d] != null){
+                    ref = p - d;
+                }else if(p + d < niveles && tiempos[p + d] != null){
+                    ref = p + d;
+                }
+            }
+            this.tiempos[p] = tiempos[ref];
+            this.valores[p] = valores[ref];
+            escalas[p] = (double) POTENCIAS[p] / POTENCIAS[ref];
+            if(tabular){
+                int base = p * ANCHO;
+                for(int t = 0; t < ANCHO; t++){
+                    double punto = valor(p, t);
+                    puntos[base + t] = redondear(punto);
+                    resultados[base + t] = clasificar(punto);
+                }
+            }
+            calcularLimites(p);
+        }
+    }
+
+    /**
+     * Calcula los límites de una potencia, válidos para cualquier tiempo como
+     * si se consultara la tabla: fuera de 0..TIEMPO_MAX se usa el extremo.
+     * Como la curva es creciente, basta con dos búsquedas binarias.
+     */
+    private void calcularLimites(int p){
+        // Primer segundo que no está poco hecho y primero que está pasado
+        int noPoco = primero(p, PUNTO_IDEAL - TOLERANCIA, false);
+        int mucho = primero(p, PUNTO_IDEAL + TOLERANCIA, true);
+        if(noPoco >= mucho){
+            // Nunca está bien: pasa de poco a mucho de golpe
+            bajo[p] = noPoco < ANCHO ? noPoco : Integer.MAX_VALUE;
+            alto[p] = bajo[p] - 1;
+            return;
+        }
+        bajo[p] = noPoco == 0 ? Integer.MIN_VALUE : noPoco;
+        alto[p] = mucho == ANCHO ? Integer.MAX_VALUE : mucho - 1;
+    }
+
+    /**
+     * @param p Índice de la potencia
+     * @param umbral Punto (%)
+     * @param pasado true para buscar el primer punto mayor que el umbral,
+     *               false para el primero mayor o igual
+     * @return Primer segundo de 0..TIEMPO_MAX que lo cumple, o ANCHO si ninguno
+     */
+    private int primero(int p, double umbral, boolean pasado){
+        int a = 0;
+        int b = ANCHO;
+        while(a < b){
+            int m = (a + b) >>> 1;
+            double v = valor(p, m);
+            if(pasado ? v > umbral : v >= umbral){
+                b = m;
+            }else{
+                a = m + 1;
+            }
+        }
+        return a;
+    }
+
+    /**
+     * @param p Índice de la potencia
+     * @param t Tiempo (segundos, dentro de 0..TIEMPO_MAX)
+     * @return Punto de cocción (%), sin redondear
+     */
+    private double valor(int p, int t){
+        return interpolar(tiempos[p], valores[p], t * escalas[p]);
+    }
+
+    private static short redondear(double punto){
+        return (short) Math.max(0, Math.min(PUNTO_MAX, Math.round(punto * 10)));
+    }
+
+    private static byte clasificar(double punto){
+        if(punto < PUNTO_IDEAL - TOLERANCIA){
+            return Comida.COCINADO_POCO;
+        }else if(punto > PUNTO_IDEAL + TOLERANCIA){
+            return Comida.COCINADO_MUCHO;
+        }
+        return Comida.COCINADO_BIEN;
+    }
+
+    /**
+     * Curva equivalente al modelo de tiempo ideal y margen: en el ideal está en
+     * su punto y a un margen de distancia justo en el límite de la tolerancia.
+     * @param tiempoIdeal Tiempo ideal a máxima potencia (segundos)
+     * @param margen Margen admitido (segundos)
+     * @return Curva sin tabular
+     */
+    public static CurvaCoccion porDefecto(int tiempoIdeal, int margen){
+        double[][] tiempos = new double[POTENCIAS.length][];
+        double[][] valores = new double[POTENCIAS.length][];
+        if(margen > 0 && tiempoIdeal - margen > 0){
+            tiempos[POTENCIA_MAXIMA] = new double[]{ tiempoIdeal - margen, tiempoIdeal, tiempoIdeal + margen };
+            valores[POTENCIA_MAXIMA] = new double[]{ PUNTO_IDEAL - TOLERANCIA, PUNTO_IDEAL, PUNTO_IDEAL + TOLERANCIA };
+        }else{
+            // Sin margen (o margen mayor que el ideal): escalón justo en el límite
+            int m = Math.max(0, margen);
+            tiempos[POTENCIA_MAXIMA] = new double[]{ tiempoIdeal - m - 0.5, tiempoIdeal - m, tiempoIdeal + m, tiempoIdeal + m + 0.5 };
+            valores[POTENCIA_MAXIMA] = new double[]{ PUNTO_IDEAL - TOLERANCIA - 1, PUNTO_IDEAL - TOLERANCIA,
+                PUNTO_IDEAL + TOLERANCIA, PUNTO_IDEAL + TOLERANCIA + 1 };
+        }
+        return new CurvaCoccion(null, tiempos, valores, false);
+    }
+
+    /**
+     * Compila una curva a partir de su definición en texto.
+     * @param definicion Definición (ver la descripción de la clase)
+     * @return Curva compilada
+     * @throws IllegalArgumentException Si la definición no es válida
+     */
+    public static CurvaCoccion compilar(String definicion){
+        double[][] tiempos = new double[POTENCIAS.length][];
+        double[][] valores = new double[POTENCIAS.length][];
+        leer(definicion, tiempos, valores);
+        return new CurvaCoccion(definicion, tiempos, valores, true);
+    }
+
+    /**
+     * Comprueba una definición sin compilar las tablas, p.ej. al leer un
+     * catálogo que luego compila cada comida.
+     * @param definicion Definición (ver la descripción de la clase)
+     * @throws IllegalArgumentException Si la definición no es válida
+     */
+    public static void comprobar(String definicion){
+        leer(definicion, new double[POTENCIAS.length][], new double[POTENCIAS.length][]);
+    }
+
+    /**
+     * Lee los puntos de cada potencia definida.
+     * @throws IllegalArgumentException Si la definición no es válida
+     */
+    private static void leer(String definicion, double[][] tiempos, double[][] valores){
+        boolean alguna = false;
+        for(String tramo : definicion.split(";")){
+            tramo = tramo.trim();
+            if(tramo.isEmpty()) continue;
+            int dosPuntos = tramo.indexOf(':');
+            if(dosPuntos < 0){
+                throw new IllegalArgumentException("Falta la potencia en \"" + tramo + "\".");
+            }
+            int nivel = nivel(Integer.parseInt(tramo.substring(0, dosPuntos).trim()));
+            if(tiempos[nivel] != null){
+                throw new IllegalArgumentException("Potencia repetida: " + POTENCIAS[nivel]);
+            }
+            String[] pares = tramo.substring(dosPuntos + 1).split(",");
+            if(pares.length == 1 && pares[0].trim().startsWith("0=")){
+                throw new IllegalArgumentException("La curva de " + POTENCIAS[nivel] + "% necesita al menos dos puntos.");
+            }
+            double[] t = new double[pares.length];
+            double[] v = new double[pares.length];
+            for(int i = 0; i < pares.length; i++){
+                int igual = pares[i].indexOf('=');
+                if(igual < 0){
+                    throw new IllegalArgumentException("Punto no válido: \"" + pares[i] + "\".");
+                }
+                t[i] = Double.parseDouble(pares[i].substring(0, igual).trim());
+                v[i] = Double.parseDouble(pares[i].substring(igual + 1).trim());
+                if(t[i] < 0 || v[i] < 0 || (i > 0 && (t[i] <= t[i - 1] || v[i] < v[i - 1]))){
+                    throw new IllegalArgumentException("La curva de " + POTENCIAS[nivel] + "% debe ser creciente.");
+                }
+            }
+            tiempos[nivel] = t;
+            valores[nivel] = v;
+            alguna = true;
+        }
+        if(!alguna){
+            throw new IllegalArgumentException("Curva vacía.");
+        }
+    }
+
+    /**
+     * @param potencia Potencia (%)
+     * @return Índice de la potencia en {@link #POTENCIAS}
+     * @throws IllegalArgumentException Si no es una de las disponibles
+     */
+    static int nivel(int potencia){
+        for(int i = 0; i < POTENCIAS.length; i++){
+            if(POTENCIAS[i] == potencia){
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Potencia no disponible: " + potencia + " (" + Arrays.toString(POTENCIAS) + ")");
+    }
+
+    /**
+     * @return Definición en texto, o null si es la curva por defecto
+     */
+    public String getDefinicion(){
+        return definicion;
+    }
+
+    /**
+     * @param nivel Índice de la potencia
+     * @param tiempo Tiempo cocinado (segundos)
+     * @return COCINADO_BIEN, COCINADO_POCO o COCINADO_MUCHO
+     */
+    public int resultado(int nivel, int tiempo){
+        if(resultados == null){
+            return clasificar(valor(nivel, limitar(tiempo)));
+        }
+        return resultados[nivel * ANCHO + limitar(tiempo)];
+    }
+
+    /**
+     * @param nivel Índice de la potencia
+     * @param tiempo Tiempo cocinado (segundos)
+     * @return Punto de cocción en décimas de % (1000 = en su punto)
+     */
+    public int punto(int nivel, int tiempo){
+        if(puntos == null){
+            return redondear(valor(nivel, limitar(tiempo)));
+        }
+        return puntos[nivel * ANCHO + limitar(tiempo)];
+    }
+
+    /**
+     * Tiempo que hace falta a una potencia para llegar a un punto.
+     * @param nivel Índice de la potencia
+     * @param punto Punto de cocción en décimas de %
+     * @return Primer segundo con ese punto o más (TIEMPO_MAX si no se llega)
+     */
+    public int tiempoHasta(int nivel, int punto){
+        // La curva es creciente: búsqueda binaria
+        int a = 0;
+        int b = TIEMPO_MAX;
+        while(a < b){
+            int m = (a + b) >>> 1;
+            if(punto(nivel, m) >= punto){
+                b = m;
+            }else{
+                a = m + 1;
+            }
+        }
+        return a;
+    }
+
+    /**
+     * @param nivel Índice de la potencia
+     * @return Primer segundo en que está bien cocinado. Si nunca lo está, el
+     *         primero en que se pasa (y {@link #getAlto} es uno menos)
+     */
+    public int getBajo(int nivel){
+        return bajo[nivel];
+    }
+
+    /**
+     * @param nivel Índice de la potencia
+     * @return Último segundo en que está bien cocinado
+     */
+    public int getAlto(int nivel){
+        return alto[nivel];
+    }
+
+    private static int limitar(int tiempo){
+        return tiempo < 0 ? 0 : (tiempo > TIEMPO_MAX ? TIEMPO_MAX : tiempo);
+    }
+
+    /**
+     * Valor de la curva en un instante.
+     */
+    private static double interpolar(double[] t, double[] v, double x){
+        int n = t.length;
+        if(x <= t[0]){
+            // Desde (0, 0) hasta el primer punto
+            return t[0] <= 0 ? v[0] : v[0] * x / t[0];
+        }
+        for(int i = 1; i < n; i++){
+            if(x <= t[i]){
+                return v[i - 1] + (v[i] - v[i - 1]) * (x - t[i - 1]) / (t[i] - t[i - 1]);
+            }
+        }
+        // Más allá del último punto sigue la pendiente del último tramo
+        double pendiente = n > 1 ? (v[n - 1] - v[n - 2]) / (t[n - 1] - t[n - 2]) : v[n - 1] / t[n - 1];
+        return v[n - 1] + pendiente * (x - t[n - 1]);
+    }
+}
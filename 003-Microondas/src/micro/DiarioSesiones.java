@@ -0,0 +1,533 @@
+package micro;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Diario binario de sesiones de cocinado, en el que solo se añade al final.
+ *
+ * Formato (big endian):
+ *   int    mágico ("CMDJ")
+ *   int    versión
+ *   Por cada sesión:
+ *     int    longitud de los datos
+ *     datos:
+ *       long   instante (ms desde 1970)
+ *       int    tiempo programado (s)
+ *       int    tiempo cocinado (temporizador, s)
+ *       int    cambios de modo
+ *       int    pausas
+ *       byte   resultado (ver constantes de Comida)
+ *       byte   origen (ver constantes ORIGEN_*)
+ *       short  longitud del nombre + nombre de la comida en UTF-8
+ *     int    CRC32 de los datos
+ *
+ * El origen distingue las sesiones a toda potencia de las que siguen un
+ * programa (su tiempo cocinado incluye fases a menos potencia y de reposo) y
+ * de las del simulador, para no aprender tiempos de ellas.
+ *
+ * {@link #registrar} solo copia la sesión a un buffer en memoria; un hilo aparte
+ * ("diario") escribe de golpe todo lo acumulado y hace un único force() por
+ * tanda (escritura en grupo). Si el buffer se llena, los hilos que registran
+ * esperan a que el escritor lo cambie por el vacío; solo el escritor los
+ * despierta, así que nunca se despiertan entre ellos. Al abrir un diario se
+ * comprueban los registros y se corta el final si quedó a medias o dañado
+ * (p.ej. por un corte de luz).
+ * Mientras está abierto se bloquea el fichero, así que dos programas (p.ej. el
+ * horno y el simulador con el diario por defecto) no pueden escribir a la vez.
+ *
+ * Uso para exportar: java micro.DiarioSesiones diario [salida.csv]
+ *
+ * @author Zarkrosh
+ */
+public class DiarioSesiones implements Closeable {
+    static final int MAGICO = 0x434D444A;
+    static final int VERSION = 1;
+    private static final int CABECERA = 8;
+    // Datos fijos de cada sesión (sin el nombre)
+    private static final int FIJO = 8 + 4 + 4 + 4 + 4 + 1 + 1 + 2;
+    private static final int TAM_BUFFER = 256 * 1024;
+    private static final int MAX_NOMBRE = 1024;
+    private static final int MAX_REGISTRO = 4 + FIJO + MAX_NOMBRE + 4;
+
+    // Origen de una sesión
+    static final int ORIGEN_HORNO = 0;          // En el horno, a toda potencia
+    static final int ORIGEN_PROGRAMA = 1;       // En el horno, con un programa de cocción
+    static final int ORIGEN_SIMULADOR = 2;      // En SimuladorHornos
+
+    /**
+     * Recibe las sesiones al leer un diario.
+     */
+    public interface Lector {
+        void sesion(long instante, String comida, int programado, int temporizador, int cambiosModo, int pausas,
+                int resultado, int origen);
+    }
+
+    private final Path fichero;
+    private final FileChannel canal;
+    private final Thread escritor;
+    // Cada hilo prepara sus registros fuera del cerrojo
+    private final ThreadLocal<Borrador> borradores = ThreadLocal.withInitial(Borrador::new);
+    private ByteBuffer llenando = ByteBuffer.allocateDirect(TAM_BUFFER);
+    private ByteBuffer escribiendo = ByteBuffer.allocateDirect(TAM_BUFFER);
+    private long registradas = 0;               // Sesiones añadidas al buffer
+    private long guardadas = 0;                 // Sesiones ya en disco
+    private long recuperadas;
+    private boolean cerrando = false;
+    private IOException error = null;
+    // Protege los buffers, los contadores, cerrando y error
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition noLleno = cerrojo.newCondition();      // Solo la señala el escritor
+    private final Condition noVacio = cerrojo.newCondition();      // Hay algo que escribir
+    private final Condition guardado = cerrojo.newCondition();     // Ha avanzado "guardadas"
+
+    /**
+     * Abre (o crea) un diario y recupera su final si quedó a medias.
+     * @param fichero Ruta del diario
+     * @throws IOException Si no se puede abrir o no es un diario
+     */
+    public DiarioSesiones(Path fichero) throws IOException {
+        this.fichero = fichero;
+        if(fichero.getParent() != null){
+            Files.createDirectories(fichero.getParent());
+        }
+        canal = FileChannel.open(fichero, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            bloquear();
+            if(canal.size() < CABECERA){
+                ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+                cabecera.putInt(MAGICO).putInt(VERSION).flip();
+                canal.truncate(0);
+                escribirTodo(canal, cabecera, 0);
+                canal.force(false);
+                recuperadas = 0;
+            }else{
+                recuperar();
+            }
+            canal.position(canal.size());
+        } catch (IOException ex) {
+            canal.close();
+            throw ex;
+        }
+        escritor = new Thread(this::escribir, "diario");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Bloquea el fichero para este programa; se libera al cerrar el canal.
+     * @throws IOException Si ya lo tiene abierto otro programa (u otro diario de este)
+     */
+    private void bloquear() throws IOException {
+        FileLock bloqueo;
+        try {
+            bloqueo = canal.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            bloqueo = null;
+        }
+        if(bloqueo == null){
+            throw new IOException("El diario \"" + fichero + "\" ya está abierto en otro programa.");
+        }
+    }
+
+    /**
+     * @return Diario por defecto: ~/.microondas/sesiones.diario (propiedad "micro.diario")
+     */
+    public static Path ficheroPorDefecto(){
+        return Paths.get(System.getProperty("micro.diario",
+                System.getProperty("user.home") + "/.microondas/sesiones.diario"));
+    }
+
+    /**
+     * Añade una sesión. No espera a que se escriba en disco.
+     * @param instante Momento en que acabó (ms desde 1970)
+     * @param comida Nombre de la comida
+     * @param programado Tiempo programado (s)
+     * @param temporizador Tiempo cocinado (s)
+     * @param cambiosModo Veces que se cambió de velocidad
+     * @param pausas Veces que se pausó
+     * @param resultado Ver constantes de Comida
+     * @param origen Ver constantes ORIGEN_*
+     * @throws IOException Si el diario está cerrado o falló una escritura anterior
+     */
+    public void registrar(long instante, String comida, int programado, int temporizador,
+            int cambiosModo, int pausas, int resultado, int origen) throws IOException {
+        Borrador borrador = borradores.get();
+        ByteBuffer r = borrador.buffer;
+        r.clear();
+        codificar(r, borrador.crc, instante, comida, programado, temporizador, cambiosModo, pausas, resultado, origen);
+        r.flip();
+        int total = r.remaining();
+        cerrojo.lock();
+        try {
+            while(llenando.remaining() < total && error == null && !cerrando){
+                // Buffer lleno: espera a que el escritor lo cambie por el vacío
+                noLleno.awaitUninterruptibly();
+            }
+            comprobar();
+            if(cerrando){
+                throw new IOException("El diario está cerrado.");
+            }
+            boolean vacio = llenando.position() == 0;
+            llenando.put(r);
+            registradas++;
+            if(vacio){
+                // El escritor puede estar esperando
+                noVacio.signal();
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Añade un registro completo (longitud, datos y CRC) a un buffer con array.
+     */
+    private static void codificar(ByteBuffer r, CRC32 crc, long instante, String comida, int programado,
+            int temporizador, int cambiosModo, int pausas, int resultado, int origen){
+        byte[] nombre = comida.getBytes(StandardCharsets.UTF_8);
+        int largo = Math.min(nombre.length, MAX_NOMBRE);
+        // Si se corta, que no sea a mitad de un carácter (bytes 10xxxxxx)
+        while(largo < nombre.length && largo > 0 && (nombre[largo] & 0xC0) == 0x80){
+            largo--;
+        }
+        int datos = FIJO + largo;
+        int inicio = r.position() + 4;
+        r.putInt(datos).putLong(instante).putInt(programado).putInt(temporizador).putInt(cambiosModo).putInt(pausas)
+                .put((byte) resultado).put((byte) origen).putShort((short) largo).put(nombre, 0, largo);
+        crc.reset();
+        crc.update(r.array(), r.arrayOffset() + inicio, datos);
+        r.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Espera a que todas las sesiones registradas estén en disco.
+     * @throws IOException Si falla la escritura
+     */
+    public void sincronizar() throws IOException {
+        cerrojo.lock();
+        try {
+            long objetivo = registradas;
+            while(guardadas < objetivo && error == null){
+                guardado.awaitUninterruptibly();
+            }
+            comprobar();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * @return Sesiones que había en el diario al abrirlo
+     */
+    public long getRecuperadas(){
+        return recuperadas;
+    }
+
+    public Path getFichero(){
+        return fichero;
+    }
+
+    /**
+     * Escribe lo pendiente y cierra el diario.
+     */
+    @Override
+    public void close() throws IOException {
+        cerrojo.lock();
+        try {
+            if(cerrando){
+                return;
+            }
+            cerrando = true;
+            noVacio.signal();
+            noLleno.signalAll();
+        } finally {
+            cerrojo.unlock();
+        }
+        try {
+            escritor.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        canal.close();
+        cerrojo.lock();
+        try {
+            comprobar();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Hilo escritor: intercambia los buffers y escribe cada tanda con un solo force().
+     */
+    private void escribir(){
+        while(true){
+            long tanda;
+            cerrojo.lock();
+            try {
+                while(llenando.position() == 0 && !cerrando){
+                    noVacio.awaitUninterruptibly();
+                }
+                if(llenando.position() == 0){
+                    return;
+                }
+                ByteBuffer t = llenando;
+                llenando = escribiendo;
+                escribiendo = t;
+                tanda = registradas;
+                // Ya hay sitio: despierta a los que esperaban
+                noLleno.signalAll();
+            } finally {
+                cerrojo.unlock();
+            }
+            try {
+                escribiendo.flip();
+                while(escribiendo.hasRemaining()){
+                    canal.write(escribiendo);
+                }
+                canal.force(false);
+                escribiendo.clear();
+                cerrojo.lock();
+                try {
+                    guardadas = tanda;
+                    guardado.signalAll();
+                } finally {
+                    cerrojo.unlock();
+                }
+            } catch (IOException ex) {
+                cerrojo.lock();
+                try {
+                    error = ex;
+                    noLleno.signalAll();
+                    guardado.signalAll();
+                } finally {
+                    cerrojo.unlock();
+                }
+                System.out.println("[!] Error al escribir el diario de sesiones: " + ex.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Buffer y CRC de un hilo para preparar registros.
+     */
+    private static class Borrador {
+        final ByteBuffer buffer = ByteBuffer.allocate(MAX_REGISTRO);
+        final CRC32 crc = new CRC32();
+    }
+
+    private void comprobar() throws IOException {
+        if(error != null){
+            throw new IOException("El diario no se puede escribir.", error);
+        }
+    }
+
+    /**
+     * Recorre los registros y corta el fichero tras el último válido.
+     */
+    private void recuperar() throws IOException {
+        final long[] n = { 0 };
+        long tamano = canal.size();
+        long valido = recorrer(canal, (instante, comida, programado, temporizador, cambiosModo, pausas, resultado, origen) -> n[0]++);
+        recuperadas = n[0];
+        if(valido < tamano){
+            System.out.println("[!] Diario de sesiones dañado al final: se descartan " + (tamano - valido) + " bytes.");
+            canal.truncate(valido);
+            canal.force(false);
+        }
+    }
+
+    /**
+     * Lee todas las sesiones válidas de un diario.
+     * @param fichero Ruta del diario
+     * @param lector Recibe cada sesión en orden
+     * @return Número de sesiones leídas
+     * @throws IOException Si no se puede leer o no es un diario
+     */
+    public static long leer(Path fichero, Lector lector) throws IOException {
+        final long[] n = { 0 };
+        try (FileChannel c = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            recorrer(c, (instante, comida, programado, temporizador, cambiosModo, pausas, resultado, origen) -> {
+                n[0]++;
+                lector.sesion(instante, comida, programado, temporizador, cambiosModo, pausas, resultado, origen);
+            });
+        }
+        return n[0];
+    }
+
+    /**
+     * @return Posición siguiente al último registro válido
+     */
+    private static long recorrer(FileChannel c, Lector lector) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(TAM_BUFFER);
+        long pos;
+        long tamano = c.size();
+        b.limit(CABECERA);
+        leerTodo(c, b, 0);
+        b.flip();
+        if(b.remaining() < CABECERA || b.getInt() != MAGICO){
+            throw new IOException("No es un diario de sesiones.");
+        }
+        int version = b.getInt();
+        if(version != VERSION){
+            throw new IOException("Versión de diario no soportada: " + version);
+        }
+        pos = CABECERA;
+        CRC32 crc = new CRC32();
+        b.clear().limit(0);
+        long leido = CABECERA;      // Posición del fichero tras lo que hay en b
+        while(true){
+            if(b.remaining() < 4){
+                leido = rellenar(c, b, leido);
+                if(b.remaining() < 4) break;
+            }
+            int datos = b.getInt(b.position());
+            if(datos < FIJO || datos > FIJO + MAX_NOMBRE){
+                break;
+            }
+            int total = 4 + datos + 4;
+            if(b.remaining() < total){
+                leido = rellenar(c, b, leido);
+                if(b.remaining() < total) break;
+            }
+            int inicio = b.position() + 4;
+            ByteBuffer d = b.duplicate();
+            d.position(inicio).limit(inicio + datos);
+            crc.reset();
+            crc.update(d);
+            if((int) crc.getValue() != b.getInt(inicio + datos)){
+                break;
+            }
+            b.position(inicio);
+            long instante = b.getLong();
+            int programado = b.getInt();
+            int temporizador = b.getInt();
+            int cambios = b.getInt();
+            int pausas = b.getInt();
+            int resultado = b.get();
+            int origen = b.get();
+            int largo = b.getShort() & 0xFFFF;
+            if(largo != datos - FIJO){
+                break;
+            }
+            String nombre = new String(b.array(), b.arrayOffset() + b.position(), largo, StandardCharsets.UTF_8);
+            b.position(inicio + datos + 4);
+            pos += total;
+            lector.sesion(instante, nombre, programado, temporizador, cambios, pausas, resultado, origen);
+        }
+        return Math.min(pos, tamano);
+    }
+
+    /**
+     * Mueve lo que queda sin leer al principio del buffer y lo completa desde el fichero.
+     * @return Nueva posición del fichero tras el buffer
+     */
+    private static long rellenar(FileChannel c, ByteBuffer b, long leido) throws IOException {
+        b.compact();
+        int antes = b.position();
+        while(b.hasRemaining()){
+            if(c.read(b, leido + (b.position() - antes)) <= 0){
+                break;
+            }
+        }
+        long nuevo = leido + (b.position() - antes);
+        b.flip();
+        return nuevo;
+    }
+
+    private static void leerTodo(FileChannel c, ByteBuffer b, long pos) throws IOException {
+        while(b.hasRemaining()){
+            int n = c.read(b, pos);
+            if(n < 0) break;
+            pos += n;
+        }
+    }
+
+    private static void escribirTodo(FileChannel c, ByteBuffer b, long pos) throws IOException {
+        while(b.hasRemaining()){
+            pos += c.write(b, pos);
+        }
+    }
+
+    /**
+     * Exporta un diario a CSV: instante,comida,programado,temporizador,cambios_modo,pausas,resultado,origen.
+     * @param fichero Ruta del diario
+     * @param out Destino
+     * @return Sesiones exportadas
+     * @throws IOException Si falla la lectura o la escritura
+     */
+    public static long exportarCsv(Path fichero, final Writer out) throws IOException {
+        out.write("instante,comida,programado,temporizador,cambios_modo,pausas,resultado,origen\n");
+        final IOException[] error = { null };
+        long n = leer(fichero, (instante, comida, programado, temporizador, cambiosModo, pausas, resultado, origen) -> {
+            if(error[0] != null) return;
+            try {
+                out.write(Long.toString(instante));
+                out.write(',');
+                out.write(csv(comida));
+                out.write(',');
+                out.write(Integer.toString(programado));
+                out.write(',');
+                out.write(Integer.toString(temporizador));
+                out.write(',');
+                out.write(Integer.toString(cambiosModo));
+                out.write(',');
+                out.write(Integer.toString(pausas));
+                out.write(',');
+                out.write(Integer.toString(resultado));
+                out.write(',');
+                out.write(Integer.toString(origen));
+                out.write('\n');
+            } catch (IOException ex) {
+                error[0] = ex;
+            }
+        });
+        if(error[0] != null){
+            throw error[0];
+        }
+        out.flush();
+        return n;
+    }
+
+    private static String csv(String s){
+        if(s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0){
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1){
+            System.out.println("Uso: java micro.DiarioSesiones diario [salida.csv]");
+            System.exit(1);
+        }
+        Path diario = Paths.get(args[0]);
+        long n;
+        if(args.length > 1){
+            try (Writer w = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                n = exportarCsv(diario, w);
+            }
+        }else{
+            Writer w = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            n = exportarCsv(diario, w);
+        }
+        System.err.println("Exportadas " + n + " sesiones.");
+    }
+}
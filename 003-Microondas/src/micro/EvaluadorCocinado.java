@@ -0,0 +1,115 @@
+package micro;
+
+import java.util.List;
+
+/**
+ * Evalúa muchos tiempos de cocinado de una vez, sin escribir nada por consola
+ * ni crear objetos.
+ *
+ * Guarda los límites de cada comida (primer y último segundo en que su curva
+ * de cocción a máxima potencia está bien cocinada; por defecto ideal - margen
+ * e ideal + margen) en arrays de enteros y calcula el resultado sin saltos:
+ * POCO si el tiempo queda por debajo del límite inferior, MUCHO si queda por
+ * encima del superior y BIEN en otro caso, igual que {@link Comida#bienCocinado(int)}.
+ *
+ * @author Zarkrosh
+ */
+public final class EvaluadorCocinado {
+    private final int[] bajo;
+    private final int[] alto;
+
+    /**
+     * @param comidas Comidas, en el orden con que se identificarán (0..n-1)
+     */
+    public EvaluadorCocinado(List<Comida> comidas) {
+        int n = comidas.size();
+        bajo = new int[n];
+        alto = new int[n];
+        for(int i = 0; i < n; i++){
+            CurvaCoccion curva = comidas.get(i).getCurva();
+            bajo[i] = curva.getBajo(CurvaCoccion.POTENCIA_MAXIMA);
+            alto[i] = curva.getAlto(CurvaCoccion.POTENCIA_MAXIMA);
+        }
+    }
+
+    /**
+     * @return Número de comidas
+     */
+    public int tamano(){
+        return bajo.length;
+    }
+
+    /**
+     * Evalúa tiempos de varias comidas.
+     * @param comidas Comida de cada sesión (índice en la lista del constructor)
+     * @param tiempos Tiempo de cada sesión (segundos)
+     * @param resultados Recibe el resultado de cada sesión (ver constantes de Comida)
+     * @param desde Primera sesión
+     * @param hasta Sesión siguiente a la última
+     */
+    public void evaluar(int[] comidas, int[] tiempos, int[] resultados, int desde, int hasta){
+        for(int i = desde; i < hasta; i++){
+            int c = comidas[i];
+            resultados[i] = resultado(tiempos[i], bajo[c], alto[c]);
+        }
+    }
+
+    /**
+     * Cuenta los resultados de varias comidas sin guardar cada uno.
+     * @param comidas Comida de cada sesión
+     * @param tiempos Tiempo de cada sesión (segundos)
+     * @param desde Primera sesión
+     * @param hasta Sesión siguiente a la última
+     * @param cuentas Acumula los totales: [comida * 3 + resultado]
+     */
+    public void contar(int[] comidas, int[] tiempos, int desde, int hasta, long[] cuentas){
+        for(int i = desde; i < hasta; i++){
+            int c = comidas[i];
+            cuentas[c * 3 + resultado(tiempos[i], bajo[c], alto[c])]++;
+        }
+    }
+
+    /**
+     * Evalúa tiempos de una sola comida.
+     * @param comida Comida
+     * @param tiempos Tiempo de cada sesión (segundos)
+     * @param resultados Recibe el resultado de cada sesión
+     * @param desde Primera sesión
+     * @param hasta Sesión siguiente a la última
+     */
+    public static void evaluar(Comida comida, int[] tiempos, int[] resultados, int desde, int hasta){
+        int b = comida.getCurva().getBajo(CurvaCoccion.POTENCIA_MAXIMA);
+        int a = comida.getCurva().getAlto(CurvaCoccion.POTENCIA_MAXIMA);
+        for(int i = desde; i < hasta; i++){
+            resultados[i] = resultado(tiempos[i], b, a);
+        }
+    }
+
+    /**
+     * Cuenta los resultados de una sola comida.
+     * @param comida Comida
+     * @param tiempos Tiempo de cada sesión (segundos)
+     * @param desde Primera sesión
+     * @param hasta Sesión siguiente a la última
+     * @return Totales: [COCINADO_BIEN, COCINADO_POCO, COCINADO_MUCHO]
+     */
+    public static long[] contar(Comida comida, int[] tiempos, int desde, int hasta){
+        int b = comida.getCurva().getBajo(CurvaCoccion.POTENCIA_MAXIMA);
+        int a = comida.getCurva().getAlto(CurvaCoccion.POTENCIA_MAXIMA);
+        long[] cuentas = new long[3];
+        for(int i = desde; i < hasta; i++){
+            cuentas[resultado(tiempos[i], b, a)]++;
+        }
+        return cuentas;
+    }
+
+    /**
+     * POCO (1) si tiempo < bajo, MUCHO (2) si tiempo > alto y BIEN (0) si no.
+     * Las restas se hacen en long para que no desborden.
+     */
+    private static int resultado(int tiempo, int bajo, int alto){
+        int poco = (int) (((long) tiempo - bajo) >>> 63);
+        int mucho = (int) (((long) alto - tiempo) >>> 63);
+        return poco | (mucho << 1);
+    }
+}
@@ -0,0 +1,18 @@
+package micro;
+
+import javax.swing.ImageIcon;
+
+/**
+ * Origen de la imagen de una comida.
+ * Permite no decodificar la imagen hasta que de verdad se va a mostrar.
+ * 
+ * @author Zarkrosh
+ */
+public interface FuenteImagen {
+    
+    /**
+     * Decodifica la imagen.
+     * @return Imagen de la comida, o null si no se ha podido leer
+     */
+    ImageIcon decodificar();
+}
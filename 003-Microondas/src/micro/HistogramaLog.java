@@ -0,0 +1,156 @@
+package micro;
+
+/**
+ * Histograma de valores enteros no negativos con cubos logarítmicos (al estilo
+ * de HdrHistogram).
+ *
+ * Los valores menores que {@link #SUBCUBOS} se cuentan exactos; a partir de ahí
+ * cada potencia de dos se divide en SUBCUBOS/2 cubos iguales, así que el error
+ * relativo es como mucho de 2/SUBCUBOS (~3 %). Ocupa siempre lo mismo, sea cual
+ * sea el número de valores, y dos histogramas se pueden sumar.
+ *
+ * No es seguro para varios hilos: cada hilo usa el suyo y se suman al final.
+ *
+ * @author Zarkrosh
+ */
+public final class HistogramaLog {
+    static final int BITS = 6;
+    static final int SUBCUBOS = 1 << BITS;
+    private static final int MITAD = SUBCUBOS / 2;
+    // Cubos exactos + MITAD por cada exponente hasta el bit 62
+    static final int CUBOS = SUBCUBOS + (63 - BITS) * MITAD;
+
+    private final long[] cuentas = new long[CUBOS];
+    private long total = 0;
+    private long maximo = 0;
+
+    /**
+     * Cuenta un valor.
+     * @param valor Valor (los negativos se cuentan como 0)
+     */
+    public void registrar(long valor){
+        registrar(valor, 1);
+    }
+
+    /**
+     * Cuenta un valor varias veces.
+     * @param valor Valor (los negativos se cuentan como 0)
+     * @param veces Número de veces
+     */
+    public void registrar(long valor, long veces){
+        if(valor < 0){
+            valor = 0;
+        }
+        cuentas[cubo(valor)] += veces;
+        total += veces;
+        if(valor > maximo){
+            maximo = valor;
+        }
+    }
+
+    /**
+     * Suma otro histograma a este.
+     * @param otro Histograma a sumar
+     */
+    public void sumar(HistogramaLog otro){
+        for(int i = 0; i < CUBOS; i++){
+            cuentas[i] += otro.cuentas[i];
+        }
+        total += otro.total;
+        maximo = Math.max(maximo, otro.maximo);
+    }
+
+    public long getTotal(){
+        return total;
+    }
+
+    public long getMaximo(){
+        return maximo;
+    }
+
+    /**
+     * @param q Fracción (0..1), p.ej. 0.99
+     * @return Valor por debajo del cual queda esa fracción de los valores
+     *         (aproximado al cubo), o 0 si está vacío
+     */
+    public long percentil(double q){
+        if(total == 0){
+            return 0;
+        }
+        long posicion = (long) Math.ceil(q * total);
+        return valorEnPosicion(Math.max(1, Math.min(total, posicion)));
+    }
+
+    /**
+     * @param posicion Posición en orden ascendente (1..total)
+     * @return Valor aproximado que ocupa esa posición
+     */
+    public long valorEnPosicion(long posicion){
+        long acumulado = 0;
+        for(int i = 0; i < CUBOS; i++){
+            acumulado += cuentas[i];
+            if(acumulado >= posicion){
+                return Math.min(maximo, medio(i));
+            }
+        }
+        return maximo;
+    }
+
+    /**
+     * @return Número de cubos con algún valor
+     */
+    public int cubosUsados(){
+        int n = 0;
+        for(long c : cuentas){
+            if(c != 0) n++;
+        }
+        return n;
+    }
+
+    /**
+     * @param i Cubo
+     * @return Valores contados en el cubo
+     */
+    public long getCuenta(int i){
+        return cuentas[i];
+    }
+
+    /**
+     * @param i Cubo
+     * @return Menor valor que cae en el cubo
+     */
+    public static long inicio(int i){
+        if(i < SUBCUBOS){
+            return i;
+        }
+        int e = (i - SUBCUBOS) / MITAD + 1;
+        long mantisa = MITAD + (i - SUBCUBOS) % MITAD;
+        return mantisa << e;
+    }
+
+    /**
+     * @param i Cubo
+     * @return Mayor valor que cae en el cubo
+     */
+    public static long fin(int i){
+        return i + 1 < CUBOS ? inicio(i + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    /**
+     * @param valor Valor no negativo
+     * @return Cubo en el que se cuenta
+     */
+    static int cubo(long valor){
+        if(valor < SUBCUBOS){
+            return (int) valor;
+        }
+        int e = 63 - Long.numberOfLeadingZeros(valor) - BITS + 1;
+        int mantisa = (int) (valor >>> e);
+        return SUBCUBOS + (e - 1) * MITAD + (mantisa - MITAD);
+    }
+
+    private static long medio(int i){
+        long a = inicio(i);
+        return a + (fin(i) - a) / 2;
+    }
+}
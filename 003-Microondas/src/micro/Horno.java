@@ -1,17 +1,14 @@
 package micro;
 
-import com.sun.org.apache.xml.internal.security.exceptions.Base64DecodingException;
-import com.sun.org.apache.xml.internal.security.utils.Base64;
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
-import javax.swing.ImageIcon;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
 
 /**
  *
@@ -25,36 +22,172 @@ public class Horno extends javax.swing.JFrame {
     public Horno() {
         initComponents();
         setLocationRelativeTo(null);
+        pantalla = new PantallaContador(vMinutos, vSegundos);
+        resultados = new PresentadorResultados();
+        abrirDiario();
+        aprenderDiario();
         // Inicializa las comidas
         comidas = new ArrayList<>();
+        cargarComidas();
+    }
+
+    /**
+     * Abre el diario de sesiones. Si no se puede, se sigue sin guardarlas.
+     */
+    private void abrirDiario(){
         try {
-            InputStream is = getClass().getResourceAsStream(PATH_COMIDAS);
-            InputStreamReader isr = new InputStreamReader(is, "UTF-8");
-            BufferedReader br = new BufferedReader(isr);
-            
-            String linea;
-            while(br.ready()){
-                // Lee comidas
-                String nombre = br.readLine();
-                int tiempo = Integer.parseInt(br.readLine());
-                int margen = Integer.parseInt(br.readLine());
-                ImageIcon imagen = new ImageIcon(Base64.decode(br.readLine()));
-                comidas.add(new Comida(nombre, tiempo, margen, imagen));
+            final DiarioSesiones d = new DiarioSesiones(DiarioSesiones.ficheroPorDefecto());
+            // Escribe lo pendiente al salir
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    d.close();
+                } catch (IOException ex) {
+                    System.out.println("[!] Error al cerrar el diario de sesiones: " + ex.getMessage());
+                }
+            }, "cerrar-diario"));
+            diario = d;
+        } catch (IOException ex) {
+            System.out.println("[!] No se ha podido abrir el diario de sesiones: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Aprende de las sesiones guardadas en el diario para recomendar tiempos.
+     * Se lee en segundo plano y se junta con lo aprendido en el hilo de la interfaz.
+     */
+    private void aprenderDiario(){
+        final Path fichero = DiarioSesiones.ficheroPorDefecto();
+        if(!Files.isRegularFile(fichero)){
+            return;
+        }
+        Thread t = new Thread(() -> {
+            final RecomendadorTiempos previo = new RecomendadorTiempos();
+            try {
+                previo.aprenderDiario(fichero);
+                SwingUtilities.invokeLater(() -> recomendador.sumar(previo));
+            } catch (IOException ex) {
+                System.out.println("[!] No se ha podido leer el diario de sesiones: " + ex.getMessage());
+            }
+        }, "aprender-diario");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Carga el catálogo de comidas. Con la propiedad "micro.catalogo" se usa
+     * uno de fuera del jar: de texto o, si acaba en ".lst", de directorio (ver
+     * {@link CatalogoDirectorio}). Si no, el incluido: el binario solo necesita
+     * leer el índice; el de texto se carga en segundo plano para no retrasar
+     * la ventana.
+     */
+    private void cargarComidas(){
+        String externo = System.getProperty("micro.catalogo");
+        if(externo != null && cargarExterno(externo)){
+            return;
+        }
+        final CacheImagenes cache = new CacheImagenes();
+        URL catalogo = getClass().getResource(PATH_CATALOGO);
+        if(catalogo != null){
+            // Catálogo binario: solo se lee el índice, las imágenes cuando se pidan
+            ArrayList<Comida> cacheadas = cache.cargar(catalogo);
+            if(cacheadas != null){
+                comidas = cacheadas;
+                return;
             }
-            
-            br.close();
-        } catch (FileNotFoundException ex) {
+            try {
+                comidas = CatalogoBinario.abrir(catalogo).cargarComidas();
+                cache.guardarEnSegundoPlano(catalogo, comidas);
+                return;
+            } catch (IOException ex) {
+                System.out.println("[!] Error al leer el catálogo binario: " + ex.getMessage());
+            }
+        }
+        
+        final URL texto = getClass().getResource(PATH_COMIDAS);
+        if(texto == null){
             System.out.println("[!] El archivo \"comidas.txt\" no existe.");
             System.exit(-1);
-        } catch (UnsupportedEncodingException ex) {
-            System.out.println("[!] Codificación no soportada. Puede haber problemas.");
+        }
+        // Arranque en caliente: sin decodificar Base64 ni PNG
+        ArrayList<Comida> cacheadas = cache.cargar(texto);
+        if(cacheadas != null){
+            comidas = cacheadas;
+            return;
+        }
+        btnComida.setEnabled(false);
+        btnComida.setText("CARGANDO...");
+        new CargadorComidas().cargarTexto(texto, new CargadorComidas.Progreso() {
+            // Se guarda la última cuenta y solo se encola un repintado a la vez
+            private final AtomicInteger ultima = new AtomicInteger();
+            private final AtomicBoolean pendiente = new AtomicBoolean(false);
+            private final Runnable pintar = () -> {
+                pendiente.set(false);
+                if(!btnComida.isEnabled()){
+                    btnComida.setText("CARGANDO... (" + ultima.get() + ")");
+                }
+            };
+
+            @Override
+            public void actualizar(final int cargadas) {
+                ultima.accumulateAndGet(cargadas, Math::max);
+                if(pendiente.compareAndSet(false, true)){
+                    SwingUtilities.invokeLater(pintar);
+                }
+            }
+
+            @Override
+            public void terminado(final ArrayList<Comida> cargadas) {
+                cache.guardarEnSegundoPlano(texto, cargadas);
+                SwingUtilities.invokeLater(() -> {
+                    comidas = cargadas;
+                    btnComida.setText("SELECCIONAR COMIDA");
+                    btnComida.setEnabled(true);
+                });
+            }
+
+            @Override
+            public void error(String mensaje) {
+                System.out.println("[!] " + mensaje);
+                System.exit(-2);
+            }
+        });
+    }
+
+    /**
+     * Carga un catálogo de texto de fuera del jar y lo vuelve a cargar cada vez
+     * que se modifica. La lista nueva se cambia por la anterior en el hilo de
+     * la interfaz; la cuenta atrás en curso no se entera.
+     * Un catálogo de directorio (manifiesto ".lst") se carga una sola vez: solo
+     * se lee el manifiesto y cada imagen cuando se pida.
+     * @param ruta Ruta de comidas.txt o del manifiesto
+     * @return false si no se ha podido cargar
+     */
+    private boolean cargarExterno(String ruta){
+        if(ruta.endsWith(".lst")){
+            try {
+                comidas = CatalogoDirectorio.abrir(Paths.get(ruta)).cargarComidas();
+                return true;
+            } catch (IOException ex) {
+                System.out.println("[!] Error al leer el catálogo \"" + ruta + "\": " + ex.getMessage());
+                return false;
+            }
+        }
+        VigilanteCatalogo vigilante = new VigilanteCatalogo(Paths.get(ruta), (cargadas, cambiadas) -> {
+            SwingUtilities.invokeLater(() -> comidas = cargadas);
+            System.out.println("Catálogo recargado: " + cambiadas + " comidas nuevas o cambiadas de " + cargadas.size() + ".");
+        });
+        try {
+            comidas = vigilante.cargar();
+        } catch (IOException | IllegalArgumentException ex) {
+            System.out.println("[!] Error al leer el catálogo \"" + ruta + "\": " + ex.getMessage());
+            return false;
+        }
+        try {
+            vigilante.iniciar();
         } catch (IOException ex) {
-            System.out.println("[!] Error al leer el archivo \"comidas.txt\".");
-        } catch (Base64DecodingException ex) {
-            System.out.println("[!] Error al decodificar la imagen en Base64.");
-            System.exit(-2);
+            System.out.println("[!] No se podrán recargar los cambios del catálogo: " + ex.getMessage());
         }
-        
+        return true;
     }
 
     /**
@@ -304,27 +437,17 @@ public class Horno extends javax.swing.JFrame {
      * Inicia/Detiene el temporizador.
      */
     private void btnStartStopActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnStartStopActionPerformed
-        if(timer == null){
-            if(!(minutos == 0 && segundos == 0)){
-                // Comprueba valores incorrector y corrige
-                if(segundos >= 60){
-                    segundos -= 60;
-                    minutos++;
-                }
-                
-                if(minutos >= 100) 
-                    minutos = 99;
-                
-                actualizarContador();
-
-                // Inicia
-                iniciarContador(CURRENT_MODE);
-            }
+        if(!cuenta.enMarcha()){
+            // Inicia (corrige valores incorrectos antes de empezar)
+            iniciarContador(CURRENT_MODE);
         }else{
-            // Pausa
-            timer.cancel();
-            timer.purge();
-            timer = null;
+            // Pausa: se conserva el tiempo restante exacto
+            cuenta.pausar();
+            pausas++;
+            if(fisica != null){
+                fisica.calentarHasta(cuenta.getTemporizador(), programador.getPrograma());
+                inicioPausa = System.nanoTime();
+            }
         }
     }//GEN-LAST:event_btnStartStopActionPerformed
 
@@ -373,9 +496,10 @@ public class Horno extends javax.swing.JFrame {
      * @param evt 
      */
     private void btnClearActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnClearActionPerformed
-        if(timer == null){
-            // Solo si el micro no está en marcha
-            minutos = segundos = 0;
+        // Solo si el micro no está en marcha
+        if(cuenta.limpiar()){
+            valorSugerido = false;
+            descartarPrograma();
             actualizarContador();
         }
     }//GEN-LAST:event_btnClearActionPerformed
@@ -384,53 +508,75 @@ public class Horno extends javax.swing.JFrame {
      * Doble click: alterna los modos de velocidad (RÁPIDA/NORMAL)
      */
     private void pContadorMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_pContadorMouseClicked
-        if(evt.getClickCount() == 2 && timer != null){
+        if(evt.getClickCount() == 2 && cuenta.enMarcha()){
             if(CURRENT_MODE == NORMAL_MODE){
                 // Esto va a coger velocidaAAAAAAAAAAAAD
-                timer.cancel();
-                timer.purge();
-                iniciarContador((CURRENT_MODE = FAST_MODE));
+                cuenta.cambiarVelocidad((CURRENT_MODE = FAST_MODE));
+                cambiosModo++;
             }else{
                 // Pasito a pasito, suave suavesito
-                timer.cancel();
-                timer.purge();
-                iniciarContador((CURRENT_MODE = NORMAL_MODE));
+                cuenta.cambiarVelocidad((CURRENT_MODE = NORMAL_MODE));
+                cambiosModo++;
             }
         }
     }//GEN-LAST:event_pContadorMouseClicked
 
     /**
-     * Inicia el contador con el modo actual.
+     * Inicia el contador con el modo actual. Si estaba pausado y no se ha
+     * cambiado el tiempo, continúa donde se quedó.
      */
     private void iniciarContador(long millis){
-        // Corre            
-        timer = new Timer();
-        timer.scheduleAtFixedRate(new TimerTask(){
+        int marcado = cuenta.getMinutos() * 60 + cuenta.getSegundos();
+        if(cuenta.iniciar(millis)){
+            if(tiempoProgramado == 0){
+                tiempoProgramado = marcado;
+            }
+            valorSugerido = false;
+            // Avisa de la fase en la que empieza, si hay programa
+            programador.actualizar(marcado);
+            actualizarContador();
+            if(fisica != null && inicioPausa >= 0){
+                // La comida ha reposado durante la pausa
+                fisica.reposar((int) ((System.nanoTime() - inicioPausa) / 1000000L / millis));
+            }
+            inicioPausa = -1;
+        }
+    }
 
+    /**
+     * Avisos de la cuenta atrás (hilo planificador).
+     */
+    private CuentaAtras.Oyente crearOyente(){
+        return new CuentaAtras.Oyente() {
             @Override
-            public void run(){
-                if(segundos > 0){
-                    segundos--;
-                }else{
-                    if(minutos > 0){
-                        minutos--;
-                        segundos = 59;
-                    }else{
-                        // Acaba
-                        System.out.println("Ding!");
-                        timer.cancel();
-                        timer.purge();
-                        timer = null;
-                        finalizado();
-                        return;
-                    }
+            public void tick(int minutos, int segundos) {
+                pantalla.mostrar(minutos, segundos);
+                energia.medir(System.currentTimeMillis() / 1000, cuenta.getTemporizador(), programador.getPrograma());
+                CoccionFisica f = fisica;
+                if(f != null){
+                    f.calentarHasta(cuenta.getTemporizador(), programador.getPrograma());
                 }
+            }
 
-                temporizador++;
-                actualizarContador();
+            @Override
+            public void finalizado() {
+                // Acaba
+                System.out.println("Ding!");
+                SwingUtilities.invokeLater(() -> finalizado());
             }
-        }, millis/2, millis);
-        
+        };
+    }
+
+    /**
+     * Avisos de cambio de fase del programa (hilo planificador).
+     */
+    private ProgramadorFases.Oyente crearOyenteFases(){
+        return (programa, fase) -> {
+            int potencia = programa.getPotencia(fase);
+            System.out.println("Fase " + (fase + 1) + "/" + programa.getFases() + ": "
+                    + (potencia == 0 ? "reposo" : potencia + " %") + " durante "
+                    + (programa.getFin(fase) - programa.getInicio(fase)) + " s");
+        };
     }
 
     /**
@@ -438,60 +584,163 @@ public class Horno extends javax.swing.JFrame {
      * @param digito Numero marcado
      */
     private void anadirDigito(int digito){
-        if(minutos < 10){
-            // Rota los dígitos a la izquierda y añade el nuevo
-            int decSeg = segundos / 10;
-            minutos = minutos * 10 + decSeg;
-            segundos = (segundos % 10) * 10 + digito;
-            
+        if(valorSugerido && !cuenta.enMarcha()){
+            // El primer dígito sustituye al tiempo sugerido
+            cuenta.limpiar();
+            valorSugerido = false;
+        }
+        if(cuenta.anadirDigito(digito)){
+            // Se ha cambiado el tiempo a mano
+            descartarPrograma();
             // Actualiza los valores
             actualizarContador();
-        }else{
-            // No hace nada, ha rellenado todos los dígitos
         }
     }
-    
+
+    /**
+     * Pasa al modo manual si había un programa cargado.
+     */
+    private void descartarPrograma(){
+        if(programador.getPrograma() != null){
+            programador.cargar(null);
+            System.out.println("Programa descartado: se cocina con el tiempo marcado.");
+        }
+    }
+
+    /**
+     * Carga el programa de la comida actual, si tiene, y marca su duración. Si
+     * no tiene, marca el tiempo recomendado. En los dos casos el primer dígito
+     * que se pulse sustituye al valor marcado.
+     */
+    private void prepararPrograma(){
+        ProgramaCoccion programa = comidaActual == null ? null : comidaActual.getPrograma();
+        if(programa != null && cuenta.fijar(programa.getTotal())){
+            programador.cargar(programa);
+            valorSugerido = true;
+            actualizarContador();
+            System.out.println("Programa de " + comidaActual.getNombre() + ": " + programa);
+            return;
+        }
+        programador.cargar(null);
+        if(comidaActual != null && cuenta.fijar(recomendador.recomendar(comidaActual))){
+            valorSugerido = true;
+            actualizarContador();
+        }
+    }
+
     /**
      * Actualiza el valor mostrado por pantalla actual.
      */
     private void actualizarContador(){
-        vMinutos.setText(String.format("%02d", minutos));
-        vSegundos.setText(String.format("%02d", segundos));
+        pantalla.mostrar(cuenta.getMinutos(), cuenta.getSegundos());
     }
     
     /**
      * Muestra un mensaje dependiendo del alimento y el tiempo calentado.
      */
     private void finalizado(){
+        temporizador = cuenta.getTemporizador();
+        energia.medir(System.currentTimeMillis() / 1000, temporizador, programador.getPrograma());
+        System.out.println(String.format("Energía de la sesión: %.1f Wh", MedidorEnergia.vatiosHora(energia.getSesion())));
         if(comidaActual != null){
             CURRENT_MODE = NORMAL_MODE;
-            int ding = comidaActual.bienCocinado(temporizador);
-            switch (ding) {
-                case Comida.COCINADO_BIEN:
-                    System.out.println("Su comida ha salido to rica!");
-                    break;
-                case Comida.COCINADO_POCO:
-                    System.out.println("Su comida ha salido fría!");
-                    break;
-                case Comida.COCINADO_MUCHO:
-                    System.out.println("Su comida esta ardiendo!");
-                    break;
-                default:
-                    System.out.println("[!] Error. Valor no válido");
-                    System.exit(-3);
-                    break;
+            // Datos de la sesión para el diario (se reinician abajo)
+            final String nombre = comidaActual.getNombre();
+            final int programado = tiempoProgramado;
+            final int cocinado = temporizador;
+            final int cambios = cambiosModo;
+            final int pausasSesion = pausas;
+            final ProgramaCoccion programa = programador.getPrograma();
+            if(fisica != null){
+                // Modo físico: decide la temperatura del centro
+                fisica.calentarHasta(temporizador, programa);
+                final Comida comida = comidaActual;
+                fisica.evaluar().thenAccept(r -> {
+                    registrarSesion(nombre, programado, cocinado, cambios, pausasSesion, r[0], programa);
+                    SwingUtilities.invokeLater(() -> {
+                        if(programa == null){
+                            recomendador.registrar(comida, cocinado, r[0]);
+                        }
+                        mostrarResultados(r[0], r[1]);
+                    });
+                });
+            }else if(programa != null){
+                // Cada fase cuenta según su potencia
+                System.out.println(temporizador + " (" + programa + ")");
+                int ding = programa.resultado(comidaActual.getCurva(), temporizador);
+                registrarSesion(nombre, programado, cocinado, cambios, pausasSesion, ding, programa);
+                mostrarResultados(ding, programa.punto(comidaActual.getCurva(), temporizador));
+            }else{
+                int ding = comidaActual.bienCocinado(temporizador);
+                registrarSesion(nombre, programado, cocinado, cambios, pausasSesion, ding, programa);
+                recomendador.registrar(comidaActual, temporizador, ding);
+                mostrarResultados(ding, comidaActual.getPunto(temporizador, CurvaCoccion.POTENCIA_MAXIMA));
             }
+        }
 
-            Resultados r = new Resultados(ding);
-            r.setDefaultCloseOperation(SelectorComidas.DISPOSE_ON_CLOSE);
-            r.setLocationRelativeTo(null);
-            r.setVisible(true);
+        reiniciarTemporizador();
+
+    }
+
+    /**
+     * Guarda la sesión en el diario, si está abierto.
+     */
+    private void registrarSesion(String comida, int programado, int cocinado, int cambios, int pausasSesion, int resultado,
+            ProgramaCoccion programa){
+        if(diario == null){
+            return;
         }
+        try {
+            diario.registrar(System.currentTimeMillis(), comida, programado, cocinado, cambios, pausasSesion, resultado,
+                    programa == null ? DiarioSesiones.ORIGEN_HORNO : DiarioSesiones.ORIGEN_PROGRAMA);
+        } catch (IOException ex) {
+            System.out.println("[!] No se ha podido guardar la sesión: " + ex.getMessage());
+        }
+    }
 
-        temporizador = 0;
+    /**
+     * Muestra el resultado de la cocción.
+     * @param ding Ver constantes de Comida
+     * @param punto Punto de cocción en décimas de %
+     */
+    private void mostrarResultados(int ding, int punto){
+        switch (ding) {
+            case Comida.COCINADO_BIEN:
+                System.out.println("Su comida ha salido to rica!");
+                break;
+            case Comida.COCINADO_POCO:
+                System.out.println("Su comida ha salido fría!");
+                break;
+            case Comida.COCINADO_MUCHO:
+                System.out.println("Su comida esta ardiendo!");
+                break;
+            default:
+                System.out.println("[!] Error. Valor no válido");
+                System.exit(-3);
+                break;
+        }
 
+        resultados.mostrar(ding, punto);
     }
     
+    /**
+     * Empieza a contar de nuevo el tiempo de cocinado.
+     */
+    private void reiniciarTemporizador(){
+        // Lo cocinado hasta ahora cuenta para la sesión que se cierra
+        energia.medir(System.currentTimeMillis() / 1000, cuenta.getTemporizador(), programador.getPrograma());
+        energia.terminarSesion();
+        cuenta.reiniciarTemporizador();
+        temporizador = 0;
+        tiempoProgramado = 0;
+        cambiosModo = 0;
+        pausas = 0;
+        if(fisica != null){
+            fisica.nuevaSesion();
+        }
+        prepararPrograma();
+    }
+
     /**
      * Carga la comida seleccionada en el microondas.
      * @param comida Comida seleccionada
@@ -501,10 +750,23 @@ public class Horno extends javax.swing.JFrame {
             btnComida.setText("");
             btnComida.setIcon(comida.getImagen());
             this.comidaActual = comida;
-            this.temporizador = 0;
+            if(TAMANO_FISICO > 0){
+                if(fisica == null){
+                    fisica = new CoccionFisica(TAMANO_FISICO);
+                }
+                fisica.asignarComida(comida);
+            }
+            reiniciarTemporizador();
         }
     }
     
+    /**
+     * @return Miniaturas de las comidas, compartidas entre selectores
+     */
+    MiniaturasComidas getMiniaturas(){
+        return miniaturas;
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -566,12 +828,30 @@ public class Horno extends javax.swing.JFrame {
     // Comidas
     private ArrayList<Comida> comidas;
     private final String PATH_COMIDAS = "/micro/datos/comidas.txt";
+    private final String PATH_CATALOGO = "/micro/datos/comidas.bin";
+    private final MiniaturasComidas miniaturas = new MiniaturasComidas(MiniaturasComidas.ANCHO, MiniaturasComidas.ALTO);
     private Comida comidaActual = null;
     private int temporizador = 0;
-    // Temporizador
-    private Timer timer;
-    private int segundos = 0;
-    private int minutos = 0;
+    // Temporizador y programa de cocción en curso
+    private final ProgramadorFases programador = new ProgramadorFases(crearOyente(), crearOyenteFases());
+    private final CuentaAtras cuenta = new CuentaAtras(programador);
+    private PantallaContador pantalla;
+    // Modo físico (-Dmicro.fisico=celdas por lado, 0 = desactivado)
+    private final int TAMANO_FISICO = Integer.getInteger("micro.fisico", 0);
+    private volatile CoccionFisica fisica = null;
+    private long inicioPausa = -1;
+    // Diario de sesiones y datos de la sesión actual
+    private DiarioSesiones diario = null;
+    private int tiempoProgramado = 0;
+    private int cambiosModo = 0;
+    private int pausas = 0;
+    // Tiempos recomendados (solo desde el hilo de la interfaz)
+    private final RecomendadorTiempos recomendador = new RecomendadorTiempos();
+    private boolean valorSugerido = false;
+    // Energía gastada, con una lectura por segundo en marcha
+    private final MedidorEnergia energia = new MedidorEnergia();
+    // Ventanas de resultado, construidas al arrancar
+    private final PresentadorResultados resultados;
     // Estados
     private final int NORMAL_MODE = 1000;
     private final int FAST_MODE = 10;
@@ -0,0 +1,21 @@
+package micro;
+
+import javax.swing.ImageIcon;
+
+/**
+ * Imagen guardada en memoria con sus bytes PNG comprimidos.
+ *
+ * @author Zarkrosh
+ */
+public class ImagenPNG implements FuenteImagen {
+    private final byte[] png;
+
+    public ImagenPNG(byte[] png) {
+        this.png = png;
+    }
+
+    @Override
+    public ImageIcon decodificar() {
+        return new ImageIcon(png);
+    }
+}
@@ -0,0 +1,65 @@
+package micro;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.ImageIcon;
+
+/**
+ * Imagen que se decodifica la primera vez que se pide.
+ * 
+ * Una vez decodificada solo se guarda con una referencia débil (SoftReference),
+ * así que el recolector puede liberarla si falta memoria. Las últimas imágenes
+ * usadas se mantienen además en una caché LRU compartida para que no se pierdan
+ * las que se están mostrando.
+ *
+ * @author Zarkrosh
+ */
+public class ImagenPerezosa {
+    // Número de imágenes recientes que no se pueden liberar
+    static final int CAPACIDAD_RECIENTES = 16;
+    
+    private static final Map<ImagenPerezosa, ImageIcon> RECIENTES =
+            new LinkedHashMap<ImagenPerezosa, ImageIcon>(CAPACIDAD_RECIENTES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ImagenPerezosa, ImageIcon> eldest) {
+            return size() > CAPACIDAD_RECIENTES;
+        }
+    };
+    
+    private final FuenteImagen fuente;
+    private SoftReference<ImageIcon> referencia;
+
+    public ImagenPerezosa(FuenteImagen fuente) {
+        this.fuente = fuente;
+    }
+    
+    /**
+     * Devuelve la imagen, decodificándola si no está en memoria.
+     * @return Imagen, o null si no se ha podido decodificar
+     */
+    public ImageIcon getImagen(){
+        ImageIcon imagen;
+        synchronized(this){
+            imagen = (referencia == null) ? null : referencia.get();
+            if(imagen == null){
+                imagen = fuente.decodificar();
+                if(imagen == null){
+                    return null;
+                }
+                referencia = new SoftReference<>(imagen);
+            }
+        }
+        synchronized(RECIENTES){
+            RECIENTES.put(this, imagen);
+        }
+        return imagen;
+    }
+    
+    /**
+     * @return true si la imagen está decodificada en memoria
+     */
+    public synchronized boolean estaDecodificada(){
+        return referencia != null && referencia.get() != null;
+    }
+}
@@ -0,0 +1,116 @@
+package micro;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Índice ordenado de los nombres de las comidas para buscar por prefijo.
+ *
+ * Los nombres se normalizan (minúsculas y sin tildes) para que "pollo" encuentre
+ * "Pollo" y "sopa" encuentre "Sópa". Cada búsqueda es una búsqueda binaria sobre
+ * el rango ordenado; si la consulta amplía la anterior (se ha escrito una letra
+ * más) se busca solo dentro del rango anterior.
+ *
+ * Se construye una vez y después se puede consultar desde cualquier hilo.
+ *
+ * @author Zarkrosh
+ */
+public class IndiceNombres {
+    private final String[] claves;
+    private final int[] orden;
+
+    /**
+     * Construye el índice. Coste O(n log n), mejor fuera del hilo de eventos.
+     * @param comidas Comidas a indexar
+     */
+    public IndiceNombres(List<Comida> comidas) {
+        int n = comidas.size();
+        final String[] normalizados = new String[n];
+        Integer[] posiciones = new Integer[n];
+        for(int i = 0; i < n; i++){
+            normalizados[i] = normalizar(comidas.get(i).getNombre());
+            posiciones[i] = i;
+        }
+        Arrays.sort(posiciones, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return normalizados[a].compareTo(normalizados[b]);
+            }
+        });
+        claves = new String[n];
+        orden = new int[n];
+        for(int i = 0; i < n; i++){
+            orden[i] = posiciones[i];
+            claves[i] = normalizados[orden[i]];
+        }
+    }
+
+    /**
+     * @return Número de comidas indexadas
+     */
+    public int tamano(){
+        return orden.length;
+    }
+
+    /**
+     * Posición en el catálogo de cada entrada del índice (en orden alfabético).
+     * No se debe modificar.
+     * @return Posiciones ordenadas por nombre
+     */
+    public int[] getOrden(){
+        return orden;
+    }
+
+    /**
+     * Busca las comidas cuyo nombre empieza por un prefijo ya normalizado.
+     * @param prefijo Prefijo normalizado con {@link #normalizar(String)}
+     * @param desde Inicio del rango donde buscar (0 para todo el índice)
+     * @param hasta Fin (exclusivo) del rango donde buscar
+     * @return Inicio del rango encontrado en la posición 0 y fin en la 1
+     */
+    public int[] buscar(String prefijo, int desde, int hasta){
+        int d = primeraNoMenor(prefijo, desde, hasta);
+        // Límite superior: primera clave que ya no empieza por el prefijo
+        int lo = d, hi = hasta;
+        while(lo < hi){
+            int m = (lo + hi) >>> 1;
+            if(claves[m].startsWith(prefijo)){
+                lo = m + 1;
+            }else{
+                hi = m;
+            }
+        }
+        return new int[]{ d, lo };
+    }
+
+    private int primeraNoMenor(String clave, int lo, int hi){
+        while(lo < hi){
+            int m = (lo + hi) >>> 1;
+            if(claves[m].compareTo(clave) < 0){
+                lo = m + 1;
+            }else{
+                hi = m;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Pasa un texto a minúsculas y le quita tildes y diéresis.
+     * @param s Texto original
+     * @return Texto normalizado
+     */
+    public static String normalizar(String s){
+        String d = Normalizer.normalize(s, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(d.length());
+        for(int i = 0; i < d.length(); i++){
+            char c = d.charAt(i);
+            if(Character.getType(c) != Character.NON_SPACING_MARK){
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+}
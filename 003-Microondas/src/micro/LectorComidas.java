@@ -0,0 +1,463 @@
+package micro;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Lee registros del catálogo de texto (comidas.txt) directamente del flujo de bytes.
+ *
+ * Cada registro son cuatro líneas: nombre, tiempo ideal, margen e imagen PNG en
+ * Base64, y opcionalmente líneas que empiezan por '@' con la curva de cocción
+ * (ver {@link CurvaCoccion}) y por '!' con el programa de cocción (ver
+ * {@link ProgramaCoccion}). La imagen se decodifica según se lee, sin pasar por un String, sobre
+ * un buffer que se reutiliza entre registros. Solo hace falta copiarla al
+ * tamaño exacto si se quiere conservar ({@link #copiarImagen()}).
+ *
+ * Para decodificar las imágenes en otros hilos, con
+ * {@link #setDecodificarImagen(boolean) setDecodificarImagen(false)} el lector
+ * solo copia el texto Base64 de cada una ({@link #copiarBase64()}) y cada hilo
+ * lo decodifica con {@link #decodificarBase64(byte[], int)}.
+ *
+ * Uso:
+ * <pre>
+ *   try (LectorComidas lector = new LectorComidas(is)) {
+ *       while(lector.siguiente()){
+ *           ... lector.getNombre(), lector.getTiempo(), lector.copiarImagen() ...
+ *       }
+ *   }
+ * </pre>
+ *
+ * @author Zarkrosh
+ */
+public class LectorComidas implements Closeable {
+    private static final int TAM_BUFFER = 64 * 1024;
+    private static final int EOF = -1;
+
+    // Valor de cada carácter Base64 (-1 si no pertenece al alfabeto)
+    private static final byte[] VALORES = new byte[256];
+    static {
+        Arrays.fill(VALORES, (byte) -1);
+        String alfabeto = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for(int i = 0; i < alfabeto.length(); i++){
+            VALORES[alfabeto.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[TAM_BUFFER];
+    private int pos = 0;
+    private int lim = 0;
+
+    // Registro actual
+    private byte[] linea = new byte[128];
+    private byte[] imagen = new byte[TAM_BUFFER];
+    private int longitudImagen;
+    private boolean decodificar = true;     // Si no, imagen guarda el texto Base64
+    private String nombre;
+    private int tiempo;
+    private int margen;
+    private String curva;
+    private String programa;
+    private int registro = 0;
+
+    public LectorComidas(InputStream in) {
+        this(in, 0);
+    }
+
+    /**
+     * @param in Flujo con los registros
+     * @param anteriores Registros que hay antes en el catálogo, para numerar
+     *                   bien los errores al leer solo una parte
+     */
+    LectorComidas(InputStream in, int anteriores) {
+        this.in = in;
+        this.registro = anteriores;
+    }
+
+    /**
+     * Busca dónde empieza y acaba cada registro de un catálogo de texto sin
+     * leer su contenido.
+     * @param d Bytes del catálogo
+     * @param n Número de bytes válidos
+     * @return Pares {inicio, fin} de cada registro, seguidos
+     */
+    static int[] limitesRegistros(byte[] d, int n){
+        int[] limites = new int[16];
+        int k = 0;
+        int i = 0;
+        while(i < n){
+            // Salta líneas vacías entre registros
+            if(d[i] == '\n' || (d[i] == '\r' && i + 1 < n && d[i + 1] == '\n')){
+                i = finLinea(d, i, n);
+                continue;
+            }
+            int inicio = i;
+            // Nombre, tiempo, margen e imagen
+            for(int l = 0; l < 4 && i < n; l++){
+                i = finLinea(d, i, n);
+            }
+            // Curva y programa
+            while(i < n && (d[i] == '@' || d[i] == '!')){
+                i = finLinea(d, i, n);
+            }
+            if(k + 2 > limites.length){
+                limites = Arrays.copyOf(limites, limites.length * 2);
+            }
+            limites[k++] = inicio;
+            limites[k++] = i;
+        }
+        return Arrays.copyOf(limites, k);
+    }
+
+    /**
+     * @return Posición después del siguiente salto de línea (o n)
+     */
+    private static int finLinea(byte[] d, int i, int n){
+        while(i < n && d[i] != '\n') i++;
+        return Math.min(n, i + 1);
+    }
+
+    /**
+     * Avanza al siguiente registro.
+     * @return false si no quedan registros
+     * @throws IOException Si falla la lectura o el registro no es válido
+     */
+    public boolean siguiente() throws IOException {
+        // Salta líneas vacías entre registros
+        int n;
+        do {
+            n = leerLinea();
+            if(n == EOF){
+                return false;
+            }
+        } while(n == 0);
+        registro++;
+        nombre = new String(linea, 0, n, StandardCharsets.UTF_8);
+        tiempo = leerEntero("tiempo");
+        margen = leerEntero("margen");
+        if(decodificar){
+            decodificarImagen();
+        }else{
+            copiarLineaImagen();
+        }
+        leerCurva();
+        return true;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public int getTiempo() {
+        return tiempo;
+    }
+
+    public int getMargen() {
+        return margen;
+    }
+
+    /**
+     * @return Definición de la curva de cocción del registro actual, o null si no tiene
+     */
+    public String getCurva() {
+        return curva;
+    }
+
+    /**
+     * @return Definición del programa de cocción del registro actual, o null si no tiene
+     */
+    public String getPrograma() {
+        return programa;
+    }
+
+    /**
+     * @return Número del registro actual (empezando en 1)
+     */
+    public int getRegistro() {
+        return registro;
+    }
+
+    /**
+     * Buffer interno con la imagen del registro actual. Solo son válidos los
+     * primeros {@link #getLongitudImagen()} bytes y se sobrescribe en el
+     * siguiente registro.
+     * @return Buffer de la imagen
+     */
+    public byte[] getBufferImagen() {
+        return imagen;
+    }
+
+    public int getLongitudImagen() {
+        return longitudImagen;
+    }
+
+    /**
+     * @return Copia de los bytes PNG del registro actual
+     */
+    public byte[] copiarImagen() {
+        return Arrays.copyOf(imagen, longitudImagen);
+    }
+
+    /**
+     * @param decodificar false para que {@link #siguiente()} solo copie el texto
+     *                    Base64 de la imagen, sin decodificarlo
+     */
+    public void setDecodificarImagen(boolean decodificar) {
+        this.decodificar = decodificar;
+    }
+
+    /**
+     * @return Copia del texto Base64 de la imagen del registro actual (solo
+     *         sin decodificar, ver {@link #setDecodificarImagen(boolean)})
+     */
+    public byte[] copiarBase64() {
+        return Arrays.copyOf(imagen, longitudImagen);
+    }
+
+    /**
+     * Decodifica el texto Base64 de una imagen en un array del tamaño exacto.
+     * @param base64 Texto de la imagen, sin el salto de línea
+     * @param registro Número del registro, para el mensaje de error
+     * @return Bytes PNG
+     * @throws IOException Si el texto no es Base64 o está vacío
+     */
+    public static byte[] decodificarBase64(byte[] base64, int registro) throws IOException {
+        // Primero se cuentan los caracteres para reservar justo lo necesario
+        int validos = 0;
+        for(byte b : base64){
+            int c = b & 0xFF;
+            if(VALORES[c] >= 0){
+                validos++;
+            }else if(c != '=' && c != '\r' && c != ' '){
+                throw formatoNoValido("imagen", registro);
+            }
+        }
+        byte[] png = new byte[validos * 6 / 8];
+        if(png.length == 0){
+            throw formatoNoValido("imagen", registro);
+        }
+        int acumulado = 0;
+        int bits = 0;
+        int n = 0;
+        for(byte b : base64){
+            int v = VALORES[b & 0xFF];
+            if(v >= 0){
+                acumulado = (acumulado << 6) | v;
+                bits += 6;
+                if(bits >= 8){
+                    bits -= 8;
+                    png[n++] = (byte) (acumulado >> bits);
+                    acumulado &= (1 << bits) - 1;
+                }
+            }
+        }
+        return png;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Rellena el buffer de lectura.
+     * @return false si se ha llegado al final del flujo
+     */
+    private boolean rellenar() throws IOException {
+        int leidos = in.read(buffer, 0, buffer.length);
+        while(leidos == 0){
+            leidos = in.read(buffer, 0, buffer.length);
+        }
+        if(leidos < 0){
+            return false;
+        }
+        pos = 0;
+        lim = leidos;
+        return true;
+    }
+
+    /**
+     * Lee una línea en {@link #linea}, sin el salto de línea.
+     * @return Longitud de la línea, o EOF si no quedan datos
+     */
+    private int leerLinea() throws IOException {
+        int n = 0;
+        boolean leido = false;
+        while(true){
+            if(pos == lim && !rellenar()){
+                break;
+            }
+            leido = true;
+            byte b = buffer[pos++];
+            if(b == '\n'){
+                break;
+            }
+            if(n == linea.length){
+                linea = Arrays.copyOf(linea, n * 2);
+            }
+            linea[n++] = b;
+        }
+        if(!leido){
+            return EOF;
+        }
+        if(n > 0 && linea[n - 1] == '\r'){
+            n--;
+        }
+        return n;
+    }
+
+    /**
+     * Lee una línea con un entero sin crear cadenas intermedias.
+     */
+    private int leerEntero(String campo) throws IOException {
+        int n = leerLinea();
+        if(n == EOF){
+            // Registro cortado antes de este campo
+            throw formatoNoValido(campo);
+        }
+        // Se admiten espacios a los lados, pero nada más
+        while(n > 0 && linea[n - 1] == ' ') n--;
+        int i = 0;
+        while(i < n && linea[i] == ' ') i++;
+        boolean negativo = i < n && linea[i] == '-';
+        if(negativo) i++;
+        if(i == n){
+            throw formatoNoValido(campo);
+        }
+        long valor = 0;
+        for(; i < n; i++){
+            int d = linea[i] - '0';
+            if(d < 0 || d > 9){
+                throw formatoNoValido(campo);
+            }
+            valor = valor * 10 + d;
+            if(valor > Integer.MAX_VALUE){
+                throw formatoNoValido(campo);
+            }
+        }
+        return (int) (negativo ? -valor : valor);
+    }
+
+    /**
+     * Copia la línea Base64 de la imagen tal cual, sin el salto de línea.
+     */
+    private void copiarLineaImagen() throws IOException {
+        int n = 0;
+        while(true){
+            if(pos == lim && !rellenar()){
+                break;
+            }
+            // Copia de golpe hasta el salto de línea o el final del buffer
+            int fin = pos;
+            while(fin < lim && buffer[fin] != '\n') fin++;
+            if(imagen.length - n < fin - pos){
+                imagen = Arrays.copyOf(imagen, Math.max(imagen.length * 2, n + fin - pos));
+            }
+            System.arraycopy(buffer, pos, imagen, n, fin - pos);
+            n += fin - pos;
+            if(fin < lim){
+                pos = fin + 1;
+                break;
+            }
+            pos = fin;
+        }
+        if(n > 0 && imagen[n - 1] == '\r'){
+            n--;
+        }
+        if(n == 0){
+            throw formatoNoValido("imagen");
+        }
+        longitudImagen = n;
+    }
+
+    /**
+     * Decodifica la línea Base64 de la imagen directamente desde el buffer de lectura.
+     */
+    private void decodificarImagen() throws IOException {
+        int acumulado = 0;
+        int bits = 0;
+        int n = 0;
+        boolean fin = false;
+        while(!fin){
+            if(pos == lim && !rellenar()){
+                break;
+            }
+            // Recorre lo que hay en el buffer de lectura
+            byte[] b = buffer;
+            int p = pos;
+            int l = lim;
+            if(imagen.length - n < l - p){
+                imagen = Arrays.copyOf(imagen, Math.max(imagen.length * 2, n + l - p));
+            }
+            while(p < l){
+                int c = b[p++] & 0xFF;
+                int v = VALORES[c];
+                if(v >= 0){
+                    acumulado = (acumulado << 6) | v;
+                    bits += 6;
+                    if(bits >= 8){
+                        bits -= 8;
+                        imagen[n++] = (byte) (acumulado >> bits);
+                        acumulado &= (1 << bits) - 1;
+                    }
+                }else if(c == '\n'){
+                    fin = true;
+                    break;
+                }else if(c != '=' && c != '\r' && c != ' '){
+                    pos = p;
+                    throw formatoNoValido("imagen");
+                }
+            }
+            pos = p;
+        }
+        if(n == 0){
+            throw formatoNoValido("imagen");
+        }
+        longitudImagen = n;
+    }
+
+    /**
+     * Lee las líneas '@' y '!' que siguen a la imagen, si las hay, y comprueba
+     * que la curva y el programa son válidos.
+     */
+    private void leerCurva() throws IOException {
+        curva = null;
+        programa = null;
+        while((pos < lim || rellenar()) && (buffer[pos] == '@' || buffer[pos] == '!')){
+            boolean esCurva = buffer[pos] == '@';
+            int n = leerLinea();
+            String tramo = new String(linea, 1, n - 1, StandardCharsets.UTF_8).trim();
+            if(esCurva){
+                curva = curva == null ? tramo : curva + ";" + tramo;
+            }else{
+                programa = programa == null ? tramo : programa + "," + tramo;
+            }
+        }
+        try {
+            if(curva != null){
+                // Solo se comprueba: las tablas las compila la comida al crearse
+                CurvaCoccion.comprobar(curva);
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Formato no válido en el campo \"curva\" del registro " + registro + ": " + ex.getMessage());
+        }
+        try {
+            if(programa != null){
+                ProgramaCoccion.compilar(programa);
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Formato no válido en el campo \"programa\" del registro " + registro + ": " + ex.getMessage());
+        }
+    }
+
+    private IOException formatoNoValido(String campo) {
+        return formatoNoValido(campo, registro);
+    }
+
+    private static IOException formatoNoValido(String campo, int registro) {
+        return new IOException("Formato no válido en el campo \"" + campo + "\" del registro " + registro + ".");
+    }
+}
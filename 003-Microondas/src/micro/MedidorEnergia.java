@@ -0,0 +1,142 @@
+package micro;
+
+/**
+ * Mide la energía que gasta un horno: potencia por tiempo en marcha.
+ *
+ * Se le pasa el tiempo cocinado en la sesión (el de la cuenta atrás, sin
+ * pausas) cada vez que cambia y se cuenta la energía de los segundos nuevos a
+ * la potencia que tocaba en cada uno, así que las pausas y las fases de
+ * reposo de un programa no gastan. La energía de cada segundo de reloj se
+ * guarda como una lectura en una {@link SerieTemporal} (en W, o lo que es lo
+ * mismo, J en ese segundo); mientras el horno está parado no se guarda nada.
+ *
+ * La potencia nominal se puede cambiar con -Dmicro.vatios.
+ *
+ * @author Zarkrosh
+ */
+public class MedidorEnergia {
+    // Potencia nominal del horno al 100 % (W)
+    static final int VATIOS = Integer.getInteger("micro.vatios", 800);
+
+    private final SerieTemporal serie;
+    private final int vatios;
+    private long segundo = Long.MIN_VALUE;  // Segundo de reloj de la lectura en curso
+    private double enSegundo = 0;           // J de la lectura en curso
+    private double sesion = 0;              // J de la sesión
+    private double total = 0;               // J desde que se creó
+    private int medido = 0;                 // Segundos de la sesión ya contados
+
+    public MedidorEnergia() {
+        this(new SerieTemporal(), VATIOS);
+    }
+
+    /**
+     * @param serie Serie donde guardar las lecturas
+     * @param vatios Potencia nominal al 100 % (W)
+     */
+    public MedidorEnergia(SerieTemporal serie, int vatios) {
+        this.serie = serie;
+        this.vatios = vatios;
+    }
+
+    /**
+     * Cuenta lo cocinado en la sesión hasta ahora. Se puede llamar de más: los
+     * segundos ya contados no se repiten.
+     * @param instante Instante de reloj (s desde 1970)
+     * @param cocinado Segundos cocinados desde que empezó la sesión
+     * @param programa Programa de la sesión, o null si es a toda potencia
+     */
+    public synchronized void medir(long instante, int cocinado, ProgramaCoccion programa){
+        if(programa == null){
+            cocinado(instante, cocinado - medido, 100);
+            medido = Math.max(medido, cocinado);
+            return;
+        }
+        for(; medido < cocinado; medido++){
+            int fase = programa.fase(medido);
+            cocinado(instante, 1, fase < programa.getFases() ? programa.getPotencia(fase) : 100);
+        }
+    }
+
+    /**
+     * El horno ha cocinado unos segundos más.
+     * @param instante Instante de reloj (s desde 1970)
+     * @param segundos Segundos cocinados desde el aviso anterior
+     * @param potencia Potencia a la que se han cocinado (%), 0 en reposo
+     */
+    public synchronized void cocinado(long instante, int segundos, int potencia){
+        if(segundos <= 0){
+            return;
+        }
+        if(instante != segundo){
+            guardarLectura();
+            // Si el reloj del sistema va hacia atrás se sigue en el último segundo
+            segundo = Math.max(instante, serie.getUltimo());
+        }
+        double julios = (double) vatios * potencia / 100 * segundos;
+        enSegundo += julios;
+        sesion += julios;
+        total += julios;
+    }
+
+    /**
+     * Termina la sesión actual.
+     * @return Energía de la sesión (J)
+     */
+    public synchronized double terminarSesion(){
+        guardarLectura();
+        double j = sesion;
+        sesion = 0;
+        medido = 0;
+        return j;
+    }
+
+    /**
+     * @return Energía de la sesión en curso (J)
+     */
+    public synchronized double getSesion(){
+        return sesion;
+    }
+
+    /**
+     * @return Energía desde que se creó el medidor (J)
+     */
+    public synchronized double getTotal(){
+        return total;
+    }
+
+    /**
+     * @return Lecturas por segundo (no usar mientras se mide desde otro hilo)
+     */
+    public SerieTemporal getSerie(){
+        return serie;
+    }
+
+    /**
+     * Resume las lecturas guardadas hasta ahora.
+     * @see SerieTemporal#resumir(long, long, long)
+     */
+    public synchronized SerieTemporal.Resumen resumir(long desde, long hasta, long paso){
+        guardarLectura();
+        return serie.resumir(desde, hasta, paso);
+    }
+
+    /**
+     * Pasa a la serie la lectura del segundo en curso, si la hay.
+     */
+    private void guardarLectura(){
+        if(segundo != Long.MIN_VALUE){
+            serie.anadir(segundo, enSegundo);
+            segundo = Long.MIN_VALUE;
+            enSegundo = 0;
+        }
+    }
+
+    /**
+     * @param julios Energía (J)
+     * @return Energía en Wh
+     */
+    static double vatiosHora(double julios){
+        return julios / 3600;
+    }
+}
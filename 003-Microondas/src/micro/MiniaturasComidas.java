@@ -0,0 +1,124 @@
+package micro;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+
+/**
+ * Caché acotada de miniaturas de las comidas para el selector.
+ *
+ * Las miniaturas se generan en un hilo aparte para no bloquear el hilo de
+ * eventos; mientras tanto {@link #getMiniatura} devuelve null y se avisa a
+ * todos los que la han pedido cuando está lista. Solo se guardan las {@link #CAPACIDAD} últimas usadas, así
+ * que la memoria no depende del tamaño del catálogo.
+ * 
+ * Salvo indicación, los métodos se llaman desde el hilo de eventos de Swing.
+ *
+ * @author Zarkrosh
+ */
+public class MiniaturasComidas {
+    static final int CAPACIDAD = 64;
+    // Tamaño de las miniaturas del selector (las imágenes del catálogo son de hasta 225x150)
+    static final int ANCHO = 120;
+    static final int ALTO = 80;
+
+    private final int ancho;
+    private final int alto;
+    private final Map<Comida, ImageIcon> cache = new LinkedHashMap<Comida, ImageIcon>(CAPACIDAD * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Comida, ImageIcon> eldest) {
+            return size() > CAPACIDAD;
+        }
+    };
+    // Miniaturas en generación y a quién avisar cuando estén listas
+    private final Map<Comida, List<Runnable>> pendientes = new HashMap<>();
+    private final ExecutorService generador = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "miniaturas");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param ancho Ancho máximo de las miniaturas
+     * @param alto Alto máximo de las miniaturas
+     */
+    public MiniaturasComidas(int ancho, int alto) {
+        this.ancho = ancho;
+        this.alto = alto;
+    }
+
+    /**
+     * Devuelve la miniatura de una comida o pide que se genere.
+     * @param c Comida
+     * @param lista Se ejecuta en el hilo de eventos cuando la miniatura está lista
+     * @return Miniatura, o null si todavía no está generada
+     */
+    public ImageIcon getMiniatura(final Comida c, final Runnable lista){
+        ImageIcon m = cache.get(c);
+        if(m != null){
+            return m;
+        }
+        List<Runnable> avisos = pendientes.get(c);
+        if(avisos == null){
+            avisos = new ArrayList<>(1);
+            pendientes.put(c, avisos);
+            generador.execute(() -> {
+                final ImageIcon generada = generar(c);
+                SwingUtilities.invokeLater(() -> {
+                    List<Runnable> listas = pendientes.remove(c);
+                    if(generada != null){
+                        cache.put(c, generada);
+                        for(Runnable r : listas){
+                            r.run();
+                        }
+                    }
+                });
+            });
+        }
+        if(!avisos.contains(lista)){
+            avisos.add(lista);
+        }
+        return null;
+    }
+
+    /**
+     * Deja de avisar a quien ya no va a pintar las miniaturas (p.ej. un
+     * selector que se cierra). Las que estén en generación se terminan igual.
+     * @param lista Aviso pasado a {@link #getMiniatura}
+     */
+    public void olvidar(Runnable lista){
+        for(List<Runnable> avisos : pendientes.values()){
+            avisos.remove(lista);
+        }
+    }
+
+    /**
+     * Escala la imagen de la comida manteniendo la proporción (hilo generador).
+     */
+    private ImageIcon generar(Comida c){
+        ImageIcon original = c.getImagen();
+        if(original == null || original.getIconWidth() <= 0){
+            return null;
+        }
+        double escala = Math.min(1.0, Math.min((double) ancho / original.getIconWidth(),
+                (double) alto / original.getIconHeight()));
+        int w = Math.max(1, (int) Math.round(original.getIconWidth() * escala));
+        int h = Math.max(1, (int) Math.round(original.getIconHeight() * escala));
+
+        BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(original.getImage(), 0, 0, w, h, null);
+        g.dispose();
+        return new ImageIcon(img);
+    }
+}
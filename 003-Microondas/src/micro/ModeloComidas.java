@@ -0,0 +1,69 @@
+package micro;
+
+import java.util.List;
+import javax.swing.AbstractListModel;
+
+/**
+ * Modelo de lista sobre las comidas del catálogo, sin copiarlas.
+ *
+ * Puede mostrar todas las comidas o solo un rango de un {@link IndiceNombres}
+ * (el resultado de una búsqueda). Cambiar el filtro no recorre las comidas.
+ *
+ * @author Zarkrosh
+ */
+public class ModeloComidas extends AbstractListModel<Comida> {
+    private final List<Comida> comidas;
+    // Filtro actual: posiciones orden[desde..hasta) del catálogo, o null si no hay
+    private int[] orden = null;
+    private int desde = 0;
+    private int hasta = 0;
+
+    public ModeloComidas(List<Comida> comidas) {
+        this.comidas = comidas;
+    }
+
+    /**
+     * Muestra solo un rango de las comidas.
+     * @param orden Posiciones en el catálogo (p.ej. {@link IndiceNombres#getOrden()})
+     * @param desde Inicio del rango
+     * @param hasta Fin del rango (exclusivo)
+     */
+    public void filtrar(int[] orden, int desde, int hasta){
+        int antes = getSize();
+        this.orden = orden;
+        this.desde = desde;
+        this.hasta = hasta;
+        avisarCambio(antes);
+    }
+
+    /**
+     * Quita el filtro y muestra todas las comidas en el orden del catálogo.
+     */
+    public void mostrarTodas(){
+        int antes = getSize();
+        this.orden = null;
+        avisarCambio(antes);
+    }
+
+    private void avisarCambio(int antes){
+        int ahora = getSize();
+        if(ahora < antes){
+            fireIntervalRemoved(this, ahora, antes - 1);
+        }else if(ahora > antes){
+            fireIntervalAdded(this, antes, ahora - 1);
+        }
+        if(Math.min(antes, ahora) > 0){
+            fireContentsChanged(this, 0, Math.min(antes, ahora) - 1);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return orden == null ? comidas.size() : hasta - desde;
+    }
+
+    @Override
+    public Comida getElementAt(int index) {
+        return comidas.get(orden == null ? index : orden[desde + index]);
+    }
+}
@@ -0,0 +1,254 @@
+package micro;
+
+/**
+ * Lógica del microondas sin interfaz: dígitos marcados, cuenta atrás, pausas,
+ * velocidad y tiempo de cocinado.
+ *
+ * No tiene hilos ni temporizadores propios: quien lo usa le pasa el instante
+ * actual (en nanosegundos de un {@link Reloj}) en cada llamada y decide
+ * cuándo volver a llamarle ({@link #proximoCambio}, {@link #finPrevisto}).
+ * Tampoco reserva memoria después de crearse, así que se pueden simular muchos
+ * hornos a la vez (ver {@link SimuladorHornos}).
+ *
+ * No es seguro para varios hilos: cada instancia debe usarse desde un único
+ * hilo o protegerse por fuera (ver {@link CuentaAtras}).
+ *
+ * @author Zarkrosh
+ */
+public final class MotorHorno {
+    // Resultados de actualizar()
+    public static final int SIN_CAMBIOS = 0;
+    public static final int CAMBIO = 1;
+    public static final int FIN = 2;
+
+    private static final long NANOS_SEGUNDO = 1000000000L;
+
+    // Valor mostrado
+    private int minutos = 0;
+    private int segundos = 0;
+
+    // Cuenta atrás (tiempos simulados en ns)
+    private long totalSim = 0;
+    private long consumidoSim = 0;
+    private long acumuladoPrevio = 0;
+    private long inicioTemporizador = 0;
+    private long marca = 0;
+    private long milisPorSegundo = 1000;
+    private boolean enMarcha = false;
+
+    /**
+     * Añade el siguiente dígito marcado. No hace nada si está en marcha o si
+     * ya se han rellenado todos los dígitos.
+     * @param digito Número marcado
+     * @return true si ha cambiado el valor mostrado
+     */
+    public boolean anadirDigito(int digito){
+        if(enMarcha || minutos >= 10){
+            return false;
+        }
+        // Rota los dígitos a la izquierda y añade el nuevo
+        int decSeg = segundos / 10;
+        minutos = minutos * 10 + decSeg;
+        segundos = (segundos % 10) * 10 + digito;
+        return true;
+    }
+
+    /**
+     * Pone a 0 el valor mostrado, solo si no está en marcha.
+     * @return true si se ha borrado
+     */
+    public boolean limpiar(){
+        if(enMarcha){
+            return false;
+        }
+        minutos = segundos = 0;
+        return true;
+    }
+
+    /**
+     * Pone un tiempo en el valor mostrado, solo si no está en marcha.
+     * @param total Segundos (se limita a 99:59)
+     * @return true si se ha cambiado
+     */
+    public boolean fijar(int total){
+        if(enMarcha){
+            return false;
+        }
+        total = Math.max(0, Math.min(total, 99 * 60 + 59));
+        minutos = total / 60;
+        segundos = total % 60;
+        return true;
+    }
+
+    /**
+     * Inicia la cuenta atrás con el valor mostrado. Si estaba pausado y no se
+     * ha cambiado el valor, continúa donde se quedó.
+     * @param ahora Instante actual (ns)
+     * @param milisPorSegundo Duración real de un segundo simulado
+     * @return true si se ha puesto en marcha
+     */
+    public boolean iniciar(long ahora, long milisPorSegundo){
+        if(enMarcha || (minutos == 0 && segundos == 0)){
+            return false;
+        }
+        // Comprueba valores incorrectos y corrige
+        if(segundos >= 60){
+            segundos -= 60;
+            minutos++;
+        }
+        if(minutos >= 100){
+            minutos = 99;
+        }
+
+        int total = minutos * 60 + segundos;
+        if(getRestante(ahora) != total){
+            // Cuenta nueva
+            acumuladoPrevio += Math.min(consumidoSim, totalSim);
+            totalSim = total * NANOS_SEGUNDO;
+            consumidoSim = 0;
+        }
+        this.milisPorSegundo = milisPorSegundo;
+        marca = ahora;
+        enMarcha = true;
+        return true;
+    }
+
+    /**
+     * Pausa la cuenta conservando exactamente el tiempo restante.
+     * @param ahora Instante actual (ns)
+     */
+    public void pausar(long ahora){
+        if(enMarcha){
+            consumidoSim = Math.min(totalSim, consumidoActual(ahora));
+            enMarcha = false;
+            mostrarRestante(ahora);
+        }
+    }
+
+    /**
+     * Cambia la velocidad sin perder el tiempo ya consumido.
+     * @param ahora Instante actual (ns)
+     * @param milisPorSegundo Duración real de un segundo simulado
+     */
+    public void cambiarVelocidad(long ahora, long milisPorSegundo){
+        if(enMarcha){
+            consumidoSim = Math.min(totalSim, consumidoActual(ahora));
+            marca = ahora;
+        }
+        this.milisPorSegundo = milisPorSegundo;
+    }
+
+    /**
+     * Recalcula el valor mostrado.
+     * @param ahora Instante actual (ns)
+     * @return SIN_CAMBIOS, CAMBIO si ha cambiado el valor mostrado o FIN si la
+     *         cuenta acaba de llegar a cero (y se ha detenido)
+     */
+    public int actualizar(long ahora){
+        if(!enMarcha){
+            return SIN_CAMBIOS;
+        }
+        int antes = minutos * 60 + segundos;
+        if(consumidoActual(ahora) >= totalSim){
+            consumidoSim = totalSim;
+            enMarcha = false;
+            minutos = segundos = 0;
+            return FIN;
+        }
+        mostrarRestante(ahora);
+        return (minutos * 60 + segundos != antes) ? CAMBIO : SIN_CAMBIOS;
+    }
+
+    /**
+     * @param ahora Instante actual (ns)
+     * @return Nanosegundos del reloj hasta que cambie el valor mostrado (0 si está
+     *         parado o ya debería haber acabado)
+     */
+    public long proximoCambio(long ahora){
+        if(!enMarcha){
+            return 0;
+        }
+        long restante = totalSim - consumidoActual(ahora);
+        if(restante <= 0){
+            return 0;
+        }
+        long hastaCambio = restante % NANOS_SEGUNDO;
+        if(hastaCambio == 0){
+            hastaCambio = NANOS_SEGUNDO;
+        }
+        return hastaCambio * milisPorSegundo / 1000;
+    }
+
+    /**
+     * @return Instante (ns) en que acabará la cuenta si no se pausa ni cambia
+     *         de velocidad, o Long.MAX_VALUE si está parado
+     */
+    public long finPrevisto(){
+        if(!enMarcha){
+            return Long.MAX_VALUE;
+        }
+        return marca + (totalSim - consumidoSim) * milisPorSegundo / 1000;
+    }
+
+    /**
+     * @param ahora Instante actual (ns)
+     * @return Segundos simulados que quedan (redondeado hacia arriba)
+     */
+    public int getRestante(long ahora){
+        long restante = totalSim - (enMarcha ? consumidoActual(ahora) : consumidoSim);
+        return (int) ((Math.max(0, restante) + NANOS_SEGUNDO - 1) / NANOS_SEGUNDO);
+    }
+
+    /**
+     * Tiempo simulado que ha estado funcionando desde el último
+     * {@link #reiniciarTemporizador}, sumando todas las cuentas y sin pausas.
+     * @param ahora Instante actual (ns)
+     * @return Segundos (redondeado)
+     */
+    public int getTemporizador(long ahora){
+        return (int) ((getAcumulado(ahora) - inicioTemporizador + NANOS_SEGUNDO / 2) / NANOS_SEGUNDO);
+    }
+
+    /**
+     * Empieza a contar de nuevo el tiempo de cocinado.
+     * @param ahora Instante actual (ns)
+     */
+    public void reiniciarTemporizador(long ahora){
+        inicioTemporizador = getAcumulado(ahora);
+    }
+
+    /**
+     * @param ahora Instante actual (ns)
+     * @return Nanosegundos simulados consumidos por todas las cuentas
+     */
+    public long getAcumulado(long ahora){
+        long consumido = enMarcha ? consumidoActual(ahora) : consumidoSim;
+        return acumuladoPrevio + Math.min(consumido, totalSim);
+    }
+
+    public int getMinutos(){
+        return minutos;
+    }
+
+    public int getSegundos(){
+        return segundos;
+    }
+
+    public boolean enMarcha(){
+        return enMarcha;
+    }
+
+    public long getMilisPorSegundo(){
+        return milisPorSegundo;
+    }
+
+    private long consumidoActual(long ahora){
+        return consumidoSim + (ahora - marca) * 1000 / milisPorSegundo;
+    }
+
+    private void mostrarRestante(long ahora){
+        int restante = getRestante(ahora);
+        minutos = restante / 60;
+        segundos = restante % 60;
+    }
+}
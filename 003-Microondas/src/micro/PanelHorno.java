@@ -0,0 +1,251 @@
+package micro;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GridLayout;
+import java.awt.Insets;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingConstants;
+
+/**
+ * Un horno dentro de un {@link TableroHornos}: la comida, el contador y los
+ * botones de {@link Horno}, en pequeño.
+ *
+ * No tiene temporizador propio. Guarda un {@link MotorHorno} que el tablero
+ * actualiza en su único tick ({@link #actualizar(long)}) y pinta en su único
+ * repintado ({@link #pintar()}). El motor se usa desde el EDT (botones) y
+ * desde el hilo del tablero, siempre con el cerrojo del panel.
+ *
+ * @author Zarkrosh
+ */
+public class PanelHorno extends JPanel {
+    private static final long NORMAL_MODE = 1000;
+    private static final long FAST_MODE = 10;
+    private static final Font FUENTE_CONTADOR = new Font("Rubik", Font.BOLD, 36);
+    private static final Font FUENTE_BOTON = new Font("Rubik", Font.PLAIN, 14);
+
+    private final TableroHornos tablero;
+    private final List<Comida> comidas;
+    private final Object cerrojo = new Object();
+    private final MotorHorno motor = new MotorHorno();
+    private final PantallaContador pantalla;
+    private long modo = NORMAL_MODE;
+    private int terminado = -1;         // Tiempo cocinado al acabar, hasta que se pinta (con el cerrojo)
+
+    private final JComboBox<String> selector;
+    private final JLabel estado;
+
+    /**
+     * @param numero Número del horno (solo se muestra)
+     * @param comidas Catálogo
+     * @param tablero Tablero que lo mueve
+     */
+    public PanelHorno(int numero, List<Comida> comidas, TableroHornos tablero) {
+        super(new BorderLayout(2, 2));
+        this.tablero = tablero;
+        this.comidas = comidas;
+        setBorder(BorderFactory.createTitledBorder("Horno " + numero));
+
+        String[] nombres = new String[comidas.size()];
+        for(int i = 0; i < nombres.length; i++){
+            nombres[i] = comidas.get(i).getNombre();
+        }
+        selector = new JComboBox<>(nombres);
+        selector.addActionListener(e -> nuevaComida());
+        add(selector, BorderLayout.NORTH);
+
+        JPanel centro = new JPanel(new BorderLayout());
+        JPanel contador = new JPanel();
+        JLabel minutos = etiqueta("00");
+        JLabel segundos = etiqueta("00");
+        contador.add(minutos);
+        contador.add(etiqueta(":"));
+        contador.add(segundos);
+        contador.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent evt) {
+                if(evt.getClickCount() == 2){
+                    cambiarModo();
+                }
+            }
+        });
+        pantalla = new PantallaContador(minutos, segundos);
+        centro.add(contador, BorderLayout.NORTH);
+
+        JPanel botones = new JPanel(new GridLayout(4, 3, 2, 2));
+        for(int d : new int[]{7, 8, 9, 4, 5, 6, 1, 2, 3}){
+            final int digito = d;
+            botones.add(boton(String.valueOf(d), () -> anadirDigito(digito)));
+        }
+        botones.add(boton("C", this::limpiar));
+        botones.add(boton("0", () -> anadirDigito(0)));
+        botones.add(boton(">||", this::iniciarPausar));
+        centro.add(botones, BorderLayout.CENTER);
+        add(centro, BorderLayout.CENTER);
+
+        estado = new JLabel(" ", SwingConstants.CENTER);
+        add(estado, BorderLayout.SOUTH);
+        nuevaComida();
+    }
+
+    /**
+     * Recalcula el contador (hilo del tablero). El valor nuevo se guarda en la
+     * pantalla y se pinta en el siguiente repintado del tablero.
+     * @param ahora Instante actual (ns)
+     * @return Resultado de {@link MotorHorno#actualizar(long)}
+     */
+    int actualizar(long ahora){
+        synchronized(cerrojo){
+            int e = motor.actualizar(ahora);
+            if(e != MotorHorno.SIN_CAMBIOS){
+                pantalla.guardar(motor.getMinutos(), motor.getSegundos());
+            }
+            if(e == MotorHorno.FIN){
+                terminado = motor.getTemporizador(ahora);
+                motor.reiniciarTemporizador(ahora);
+                modo = NORMAL_MODE;
+            }
+            return e;
+        }
+    }
+
+    boolean enMarcha(){
+        synchronized(cerrojo){
+            return motor.enMarcha();
+        }
+    }
+
+    /**
+     * Pinta el contador y, si acaba de terminar, el resultado. Solo desde el EDT.
+     */
+    void pintar(){
+        pantalla.pintar();
+        int cocinado;
+        synchronized(cerrojo){
+            cocinado = terminado;
+            terminado = -1;
+        }
+        if(cocinado >= 0){
+            finalizado(cocinado);
+        }
+    }
+
+    private void finalizado(int cocinado){
+        Comida c = comidaActual();
+        if(c == null){
+            return;
+        }
+        int ding = c.bienCocinado(cocinado);
+        switch(ding){
+            case Comida.COCINADO_BIEN:
+                mostrarEstado("¡Al punto! (" + cocinado + " s)", new Color(253, 202, 71));
+                break;
+            case Comida.COCINADO_POCO:
+                mostrarEstado("Frío frío... (" + cocinado + " s)", new Color(60, 138, 236));
+                break;
+            default:
+                mostrarEstado("¡¡Te has pasado!! (" + cocinado + " s)", new Color(255, 70, 20));
+                break;
+        }
+    }
+
+    private void anadirDigito(int digito){
+        synchronized(cerrojo){
+            if(!motor.anadirDigito(digito)){
+                return;
+            }
+            pantalla.guardar(motor.getMinutos(), motor.getSegundos());
+        }
+        pantalla.pintar();
+    }
+
+    private void limpiar(){
+        synchronized(cerrojo){
+            if(!motor.limpiar()){
+                return;
+            }
+            pantalla.guardar(0, 0);
+        }
+        pantalla.pintar();
+    }
+
+    private void iniciarPausar(){
+        long ahora = RelojReal.INSTANCIA.nanos();
+        boolean arrancado;
+        synchronized(cerrojo){
+            if(motor.enMarcha()){
+                motor.pausar(ahora);
+                pantalla.guardar(motor.getMinutos(), motor.getSegundos());
+                arrancado = false;
+            }else{
+                arrancado = motor.iniciar(ahora, modo);
+            }
+        }
+        if(arrancado){
+            mostrarEstado(" ", null);
+            tablero.despertar();
+        }
+        pantalla.pintar();
+    }
+
+    /**
+     * Doble click en el contador: alterna entre velocidad normal y rápida.
+     */
+    private void cambiarModo(){
+        synchronized(cerrojo){
+            if(motor.enMarcha()){
+                modo = modo == NORMAL_MODE ? FAST_MODE : NORMAL_MODE;
+                motor.cambiarVelocidad(RelojReal.INSTANCIA.nanos(), modo);
+            }
+        }
+    }
+
+    /**
+     * Se ha elegido otra comida: empieza una sesión nueva con su tiempo ideal
+     * marcado, si el horno no está en marcha.
+     */
+    private void nuevaComida(){
+        Comida c = comidaActual();
+        synchronized(cerrojo){
+            if(c == null || !motor.fijar(c.getTiempoIdeal())){
+                return;
+            }
+            motor.reiniciarTemporizador(RelojReal.INSTANCIA.nanos());
+            pantalla.guardar(motor.getMinutos(), motor.getSegundos());
+        }
+        mostrarEstado(" ", null);
+        pantalla.pintar();
+    }
+
+    private Comida comidaActual(){
+        int i = selector.getSelectedIndex();
+        return i < 0 ? null : comidas.get(i);
+    }
+
+    private void mostrarEstado(String texto, Color color){
+        estado.setText(texto);
+        estado.setForeground(color == null ? getForeground() : color);
+    }
+
+    private static JLabel etiqueta(String texto){
+        JLabel l = new JLabel(texto, SwingConstants.CENTER);
+        l.setFont(FUENTE_CONTADOR);
+        return l;
+    }
+
+    private static JButton boton(String texto, Runnable accion){
+        JButton b = new JButton(texto);
+        b.setFont(FUENTE_BOTON);
+        b.setMargin(new Insets(2, 2, 2, 2));
+        b.addActionListener(e -> accion.run());
+        return b;
+    }
+}
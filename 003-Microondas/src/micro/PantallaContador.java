@@ -0,0 +1,92 @@
+package micro;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+
+/**
+ * Muestra los minutos y segundos del contador en dos etiquetas.
+ *
+ * Se puede llamar a {@link #mostrar(int, int)} desde cualquier hilo: el valor
+ * se guarda y, si no hay ya un repintado pendiente, se encola uno solo en el
+ * EDT, que pinta el último valor. Los textos "00".."99" se crean una sola vez,
+ * así que actualizar el contador no formatea ni crea cadenas.
+ *
+ * Quien pinta varias pantallas de una vez (ver {@link TableroHornos}) usa
+ * {@link #guardar(int, int)} y luego {@link #pintar()} en su propio repintado.
+ *
+ * @author Zarkrosh
+ */
+public class PantallaContador {
+    private static final String[] DIGITOS = new String[100];
+
+    static {
+        for(int i = 0; i < DIGITOS.length; i++){
+            DIGITOS[i] = new String(new char[]{ (char) ('0' + i / 10), (char) ('0' + i % 10) });
+        }
+    }
+
+    private final JLabel minutos;
+    private final JLabel segundos;
+    private final AtomicBoolean pendiente = new AtomicBoolean(false);
+    private volatile int valor = 0;     // minutos * 100 + segundos
+    private int pintado = -1;           // Solo desde el EDT
+
+    private final Runnable pintar = new Runnable() {
+        @Override
+        public void run() {
+            pendiente.set(false);
+            pintar();
+        }
+    };
+
+    public PantallaContador(JLabel minutos, JLabel segundos) {
+        this.minutos = minutos;
+        this.segundos = segundos;
+    }
+
+    /**
+     * Cambia el valor mostrado. Se puede llamar desde cualquier hilo.
+     * @param m Minutos (0-99)
+     * @param s Segundos (0-99)
+     */
+    public void mostrar(int m, int s){
+        guardar(m, s);
+        if(pendiente.compareAndSet(false, true)){
+            SwingUtilities.invokeLater(pintar);
+        }
+    }
+
+    /**
+     * Cambia el valor sin encolar el repintado. Se puede llamar desde cualquier hilo.
+     * @param m Minutos (0-99)
+     * @param s Segundos (0-99)
+     */
+    public void guardar(int m, int s){
+        valor = digitos(m) * 100 + digitos(s);
+    }
+
+    /**
+     * Pinta el último valor guardado si no estaba ya. Solo desde el EDT.
+     */
+    public void pintar(){
+        int v = valor;
+        if(v != pintado){
+            pintado = v;
+            minutos.setText(DIGITOS[v / 100]);
+            segundos.setText(DIGITOS[v % 100]);
+        }
+    }
+
+    /**
+     * @param n Número de dos dígitos
+     * @return Su texto con cero a la izquierda ("07")
+     */
+    static String texto(int n){
+        return DIGITOS[digitos(n)];
+    }
+
+    private static int digitos(int n){
+        return Math.max(0, Math.min(99, n));
+    }
+}
@@ -0,0 +1,47 @@
+package micro;
+
+import javax.swing.WindowConstants;
+
+/**
+ * Muestra el resultado de cada cocción sin crear ventanas nuevas.
+ *
+ * Las tres ventanas de {@link Resultados} (bien, poco y mucho) se construyen
+ * una vez al crear el presentador, con sus iconos ya decodificados. Al
+ * terminar una cocción solo se cambia el punto mostrado y se enseña la que
+ * toca, así que aparece en lo que tarda en pintarse. Al cerrarlas se ocultan
+ * en vez de destruirse.
+ *
+ * Solo se usa desde el hilo de la interfaz.
+ *
+ * @author Zarkrosh
+ */
+public class PresentadorResultados {
+    private final Resultados[] vistas = new Resultados[3];
+
+    public PresentadorResultados() {
+        for(int r = Comida.COCINADO_BIEN; r <= Comida.COCINADO_MUCHO; r++){
+            Resultados v = new Resultados(r);
+            v.setDefaultCloseOperation(WindowConstants.HIDE_ON_CLOSE);
+            v.setLocationRelativeTo(null);
+            vistas[r] = v;
+        }
+    }
+
+    /**
+     * Enseña el resultado de una cocción. Si quedaba abierto el de otra
+     * anterior, se oculta.
+     * @param resultado Ver constantes de Comida
+     * @param punto Punto de cocción en décimas de %, o -1 para no mostrarlo
+     */
+    public void mostrar(int resultado, int punto){
+        for(Resultados v : vistas){
+            if(v.getResultado() != resultado && v.isVisible()){
+                v.setVisible(false);
+            }
+        }
+        Resultados v = vistas[resultado];
+        v.setPunto(punto);
+        v.setVisible(true);
+        v.toFront();
+    }
+}
@@ -0,0 +1,183 @@
+package micro;
+
+import java.util.Arrays;
+
+/**
+ * Programa de cocción: fases seguidas, cada una con una potencia y una duración.
+ * Una fase con potencia 0 es de reposo (el horno cuenta pero no calienta).
+ *
+ * El horno cuenta atrás la duración total del programa y la fase en curso se
+ * saca del tiempo ya cocinado (ver {@link ProgramadorFases}), así que una pausa
+ * congela todo el programa sin perder nada.
+ *
+ * Definición en texto (línea "!..." del catálogo), potencia (%) y segundos:
+ * <pre>
+ *   100:120,50:180,0:60
+ * </pre>
+ *
+ * @author Zarkrosh
+ */
+public final class ProgramaCoccion {
+    // Nivel de las fases de reposo
+    static final int REPOSO = -1;
+
+    private final String definicion;
+    private final int[] niveles;        // Índice en CurvaCoccion.POTENCIAS, o REPOSO
+    private final int[] fines;          // Segundo en que acaba cada fase (acumulado)
+
+    private ProgramaCoccion(String definicion, int[] niveles, int[] fines) {
+        this.definicion = definicion;
+        this.niveles = niveles;
+        this.fines = fines;
+    }
+
+    /**
+     * Compila un programa a partir de su definición en texto.
+     * @param definicion Definición (ver la descripción de la clase)
+     * @return Programa compilado
+     * @throws IllegalArgumentException Si la definición no es válida
+     */
+    public static ProgramaCoccion compilar(String definicion){
+        String[] fases = definicion.split(",");
+        int[] niveles = new int[fases.length];
+        int[] fines = new int[fases.length];
+        int n = 0;
+        int total = 0;
+        for(String fase : fases){
+            fase = fase.trim();
+            if(fase.isEmpty()) continue;
+            int dosPuntos = fase.indexOf(':');
+            if(dosPuntos < 0){
+                throw new IllegalArgumentException("Falta la duración en \"" + fase + "\".");
+            }
+            int potencia = Integer.parseInt(fase.substring(0, dosPuntos).trim());
+            int duracion = Integer.parseInt(fase.substring(dosPuntos + 1).trim());
+            if(duracion <= 0){
+                throw new IllegalArgumentException("Duración no válida en \"" + fase + "\".");
+            }
+            total += duracion;
+            if(total > CurvaCoccion.TIEMPO_MAX){
+                throw new IllegalArgumentException("El programa dura más de " + CurvaCoccion.TIEMPO_MAX + " segundos.");
+            }
+            niveles[n] = potencia == 0 ? REPOSO : CurvaCoccion.nivel(potencia);
+            fines[n++] = total;
+        }
+        if(n == 0){
+            throw new IllegalArgumentException("Programa vacío.");
+        }
+        return new ProgramaCoccion(definicion, Arrays.copyOf(niveles, n), Arrays.copyOf(fines, n));
+    }
+
+    public String getDefinicion(){
+        return definicion;
+    }
+
+    public int getFases(){
+        return niveles.length;
+    }
+
+    /**
+     * @return Duración total (segundos)
+     */
+    public int getTotal(){
+        return fines[fines.length - 1];
+    }
+
+    /**
+     * @param fase Índice de la fase
+     * @return Índice de la potencia en {@link CurvaCoccion#POTENCIAS}, o {@link #REPOSO}
+     */
+    public int getNivel(int fase){
+        return niveles[fase];
+    }
+
+    /**
+     * @param fase Índice de la fase
+     * @return Potencia (%), 0 si es de reposo
+     */
+    public int getPotencia(int fase){
+        return niveles[fase] == REPOSO ? 0 : CurvaCoccion.POTENCIAS[niveles[fase]];
+    }
+
+    /**
+     * @param fase Índice de la fase
+     * @return Segundo (desde el inicio del programa) en que empieza
+     */
+    public int getInicio(int fase){
+        return fase == 0 ? 0 : fines[fase - 1];
+    }
+
+    /**
+     * @param fase Índice de la fase
+     * @return Segundo (desde el inicio del programa) en que acaba
+     */
+    public int getFin(int fase){
+        return fines[fase];
+    }
+
+    /**
+     * @param transcurrido Segundos desde el inicio del programa
+     * @return Fase en la que está, o {@link #getFases()} si ya ha terminado
+     */
+    public int fase(int transcurrido){
+        int f = 0;
+        while(f < fines.length && transcurrido >= fines[f]) f++;
+        return f;
+    }
+
+    /**
+     * Punto de cocción tras cocinar parte del programa.
+     * @param curva Curva de cocción de la comida
+     * @param transcurrido Segundos cocinados desde el inicio del programa
+     * @return Punto de cocción en décimas de % (1000 = en su punto)
+     */
+    public int punto(CurvaCoccion curva, int transcurrido){
+        long e = equivalente(curva, transcurrido);
+        return curva.punto((int) (e >>> 32), (int) e);
+    }
+
+    /**
+     * @param curva Curva de cocción de la comida
+     * @param transcurrido Segundos cocinados desde el inicio del programa
+     * @return COCINADO_BIEN, COCINADO_POCO o COCINADO_MUCHO
+     */
+    public int resultado(CurvaCoccion curva, int transcurrido){
+        long e = equivalente(curva, transcurrido);
+        return curva.resultado((int) (e >>> 32), (int) e);
+    }
+
+    /**
+     * Cada fase sigue la curva de su potencia desde el tiempo en que esa
+     * potencia habría dado el punto alcanzado hasta entonces; en reposo no
+     * cambia. Con una sola fase es exactamente la curva de esa potencia.
+     * @return Potencia (32 bits altos) y tiempo a esa potencia con el mismo punto
+     */
+    private long equivalente(CurvaCoccion curva, int transcurrido){
+        int nivel = CurvaCoccion.POTENCIA_MAXIMA;
+        int tiempo = 0;
+        int inicio = 0;
+        for(int f = 0; f < niveles.length && inicio < transcurrido; f++){
+            int duracion = Math.min(fines[f], transcurrido) - inicio;
+            if(niveles[f] != REPOSO){
+                if(niveles[f] != nivel){
+                    tiempo = curva.tiempoHasta(niveles[f], curva.punto(nivel, tiempo));
+                    nivel = niveles[f];
+                }
+                tiempo += duracion;
+            }
+            inicio = fines[f];
+        }
+        return ((long) nivel << 32) | tiempo;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder sb = new StringBuilder();
+        for(int f = 0; f < niveles.length; f++){
+            if(f > 0) sb.append(" + ");
+            sb.append(getFin(f) - getInicio(f)).append(" s ");
+            sb.append(niveles[f] == REPOSO ? "reposo" : "al " + getPotencia(f) + " %");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package micro;
+
+/**
+ * Avanza por las fases de un {@link ProgramaCoccion} con los avisos de una
+ * {@link CuentaAtras}.
+ *
+ * Se coloca entre la cuenta y su oyente: reenvía todos los avisos y, en cada
+ * tick, calcula la fase a partir del tiempo restante. No usa hilos ni
+ * temporizadores propios (todo va en el hilo del reloj de la cuenta) y, como la
+ * fase sale del tiempo consumido, al pausar la cuenta se congela el programa
+ * entero con el tiempo exacto que le queda.
+ *
+ * Sin programa cargado solo reenvía los avisos (modo manual).
+ *
+ * @author Zarkrosh
+ */
+public class ProgramadorFases implements CuentaAtras.Oyente {
+
+    /**
+     * Recibe los cambios de fase. Se llama desde el hilo del reloj.
+     */
+    public interface Oyente {
+        /**
+         * Empieza una fase del programa.
+         * @param programa Programa en curso
+         * @param fase Índice de la fase
+         */
+        void fase(ProgramaCoccion programa, int fase);
+    }
+
+    private final CuentaAtras.Oyente destino;
+    private final Oyente oyente;
+    private ProgramaCoccion programa = null;
+    private int fase = -1;
+
+    /**
+     * @param destino Oyente al que se reenvían los avisos de la cuenta
+     * @param oyente Oyente de los cambios de fase
+     */
+    public ProgramadorFases(CuentaAtras.Oyente destino, Oyente oyente) {
+        this.destino = destino;
+        this.oyente = oyente;
+    }
+
+    /**
+     * Carga un programa. La cuenta debe empezar con su duración total.
+     * @param programa Programa, o null para el modo manual
+     */
+    public synchronized void cargar(ProgramaCoccion programa){
+        this.programa = programa;
+        this.fase = -1;
+    }
+
+    public synchronized ProgramaCoccion getPrograma(){
+        return programa;
+    }
+
+    /**
+     * @return Fase en curso, o -1 si no ha empezado
+     */
+    public synchronized int getFase(){
+        return fase;
+    }
+
+    /**
+     * Comprueba si ha cambiado la fase.
+     * @param restante Segundos que le quedan a la cuenta
+     */
+    public void actualizar(int restante){
+        ProgramaCoccion p;
+        int nueva;
+        synchronized(this){
+            p = programa;
+            if(p == null){
+                return;
+            }
+            nueva = p.fase(p.getTotal() - restante);
+            if(nueva == fase || nueva >= p.getFases()){
+                return;
+            }
+            fase = nueva;
+        }
+        oyente.fase(p, nueva);
+    }
+
+    @Override
+    public void tick(int minutos, int segundos) {
+        actualizar(minutos * 60 + segundos);
+        destino.tick(minutos, segundos);
+    }
+
+    @Override
+    public void finalizado() {
+        destino.finalizado();
+    }
+}
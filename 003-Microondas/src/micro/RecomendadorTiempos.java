@@ -0,0 +1,268 @@
+package micro;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Recomienda con qué tiempo empezar a cocinar cada comida, aprendiendo de las
+ * sesiones terminadas.
+ *
+ * Por cada comida lleva la media y la varianza del tiempo "bueno" de sus
+ * sesiones, actualizadas en O(1) con el algoritmo de Welford. Si la sesión
+ * salió bien cuenta su tiempo; si salió fría o quemada se corrige una
+ * desviación hacia arriba o hacia abajo. El tiempo ideal del catálogo hace de
+ * punto de partida con el peso de {@link #PESO_PREVIO} sesiones, así que al
+ * principio se recomienda el ideal y poco a poco manda lo aprendido.
+ *
+ * El estado de todas las comidas está en arrays de primitivos indexados por
+ * un identificador (ver {@link #id(String)}) y la recomendación se recalcula
+ * en cada sesión, así que pedirla es leer una posición de un array.
+ *
+ * No es seguro para varios hilos: cada hilo usa el suyo y se suman con
+ * {@link #sumar(RecomendadorTiempos)}.
+ *
+ * Uso para medir la velocidad: java micro.RecomendadorTiempos [sesiones]
+ *
+ * @author Zarkrosh
+ */
+public final class RecomendadorTiempos {
+    // Sesiones que vale el tiempo ideal del catálogo
+    static final int PESO_PREVIO = 5;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] nombres = new String[8];
+    private int[] ideales = new int[8];         // -1 si no se conoce la comida
+    private int[] margenes = new int[8];
+    private long[] sesiones = new long[8];
+    private double[] medias = new double[8];
+    private double[] m2 = new double[8];         // Suma de cuadrados de las diferencias (Welford)
+    private double[] desviaciones = new double[8];
+    private int[] recomendados = new int[8];
+    private int n = 0;
+
+    public RecomendadorTiempos() {
+    }
+
+    /**
+     * Crea el recomendador con las comidas del catálogo, cuyos identificadores
+     * son su posición en la lista.
+     * @param comidas Catálogo
+     */
+    public RecomendadorTiempos(List<Comida> comidas) {
+        for(Comida c : comidas){
+            id(c);
+        }
+    }
+
+    /**
+     * @param nombre Nombre de la comida
+     * @return Identificador de la comida (se crea si no lo tenía)
+     */
+    public int id(String nombre){
+        Integer id = ids.get(nombre);
+        if(id != null){
+            return id;
+        }
+        if(n == nombres.length){
+            crecer();
+        }
+        nombres[n] = nombre;
+        ideales[n] = -1;
+        ids.put(nombre, n);
+        return n++;
+    }
+
+    /**
+     * Como {@link #id(String)}, y además toma el tiempo ideal y el margen de
+     * la comida como punto de partida.
+     * @param comida Comida
+     * @return Identificador de la comida
+     */
+    public int id(Comida comida){
+        int id = id(comida.getNombre());
+        if(ideales[id] != comida.getTiempoIdeal() || margenes[id] != comida.getMargen()){
+            ideales[id] = comida.getTiempoIdeal();
+            margenes[id] = comida.getMargen();
+            actualizarRecomendado(id);
+        }
+        return id;
+    }
+
+    /**
+     * Aprende de una sesión terminada.
+     * @param id Identificador de la comida
+     * @param tiempo Tiempo cocinado (segundos)
+     * @param resultado COCINADO_BIEN, COCINADO_POCO o COCINADO_MUCHO
+     */
+    public void registrar(int id, int tiempo, int resultado){
+        double x = tiempo;
+        if(resultado == Comida.COCINADO_POCO){
+            x += desviaciones[id];
+        }else if(resultado == Comida.COCINADO_MUCHO){
+            x -= desviaciones[id];
+        }
+        long k = ++sesiones[id];
+        double d = x - medias[id];
+        medias[id] += d / k;
+        m2[id] += d * (x - medias[id]);
+        actualizarRecomendado(id);
+    }
+
+    /**
+     * @see #registrar(int, int, int)
+     */
+    public void registrar(Comida comida, int tiempo, int resultado){
+        registrar(id(comida), tiempo, resultado);
+    }
+
+    /**
+     * @param id Identificador de la comida
+     * @return Tiempo recomendado (segundos), 0 si no se sabe nada de ella
+     */
+    public int recomendar(int id){
+        return recomendados[id];
+    }
+
+    /**
+     * @param comida Comida
+     * @return Tiempo recomendado (segundos)
+     */
+    public int recomendar(Comida comida){
+        return recomendados[id(comida)];
+    }
+
+    /**
+     * @param id Identificador de la comida
+     * @return Sesiones aprendidas
+     */
+    public long getSesiones(int id){
+        return sesiones[id];
+    }
+
+    /**
+     * @param id Identificador de la comida
+     * @return Desviación típica estimada del tiempo bueno (segundos)
+     */
+    public double getDesviacion(int id){
+        return desviaciones[id];
+    }
+
+    public int getComidas(){
+        return n;
+    }
+
+    public String getNombre(int id){
+        return nombres[id];
+    }
+
+    /**
+     * Suma lo aprendido por otro recomendador (p.ej. el de otro hilo),
+     * juntando las comidas por nombre.
+     * @param otro Recomendador a sumar
+     */
+    public void sumar(RecomendadorTiempos otro){
+        for(int j = 0; j < otro.n; j++){
+            int i = id(otro.nombres[j]);
+            if(ideales[i] < 0 && otro.ideales[j] >= 0){
+                ideales[i] = otro.ideales[j];
+                margenes[i] = otro.margenes[j];
+            }
+            long na = sesiones[i];
+            long nb = otro.sesiones[j];
+            if(nb > 0){
+                // Combinación de dos medias y varianzas (Chan et al.)
+                long total = na + nb;
+                double d = otro.medias[j] - medias[i];
+                medias[i] += d * nb / total;
+                m2[i] += otro.m2[j] + d * d * na * nb / total;
+                sesiones[i] = total;
+            }
+            actualizarRecomendado(i);
+        }
+    }
+
+    /**
+     * Aprende de las sesiones de un diario hechas en el horno a toda potencia.
+     * Las de un programa (su tiempo incluye fases a menos potencia y de
+     * reposo) y las del simulador se saltan, igual que el horno no registra
+     * las de un programa.
+     * @param fichero Diario de sesiones
+     * @return Sesiones leídas
+     * @throws IOException Si no se puede leer
+     */
+    public long aprenderDiario(Path fichero) throws IOException {
+        return DiarioSesiones.leer(fichero, (instante, comida, programado, temporizador, cambiosModo, pausas, resultado, origen) -> {
+            if(origen == DiarioSesiones.ORIGEN_HORNO){
+                registrar(id(comida), temporizador, resultado);
+            }
+        });
+    }
+
+    /**
+     * Junta el punto de partida con lo aprendido, como si el tiempo ideal
+     * fueran PESO_PREVIO sesiones con el margen como desviación.
+     */
+    private void actualizarRecomendado(int id){
+        long k = sesiones[id];
+        double peso = ideales[id] >= 0 ? PESO_PREVIO : 0;
+        if(k == 0 && peso == 0){
+            recomendados[id] = 0;
+            desviaciones[id] = 0;
+            return;
+        }
+        double media = (peso * ideales[id] + k * medias[id]) / (peso + k);
+        double margen = Math.max(0, margenes[id]);
+        double varianza = (peso * margen * margen + m2[id]) / (peso + k);
+        desviaciones[id] = Math.max(1, Math.sqrt(varianza));
+        recomendados[id] = (int) Math.max(1, Math.min(CurvaCoccion.TIEMPO_MAX, Math.round(media)));
+    }
+
+    private void crecer(){
+        int c = nombres.length * 2;
+        nombres = Arrays.copyOf(nombres, c);
+        ideales = Arrays.copyOf(ideales, c);
+        margenes = Arrays.copyOf(margenes, c);
+        sesiones = Arrays.copyOf(sesiones, c);
+        medias = Arrays.copyOf(medias, c);
+        m2 = Arrays.copyOf(m2, c);
+        desviaciones = Arrays.copyOf(desviaciones, c);
+        recomendados = Arrays.copyOf(recomendados, c);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 50000000;
+        List<Comida> catalogo = SimuladorHornos.cargarCatalogo();
+        int[] comidas = new int[1 << 16];
+        int[] tiempos = new int[comidas.length];
+        int[] resultados = new int[comidas.length];
+        Random r = new Random(42);
+        for(int i = 0; i < comidas.length; i++){
+            comidas[i] = r.nextInt(catalogo.size());
+            Comida c = catalogo.get(comidas[i]);
+            tiempos[i] = (int) Math.max(1, Math.round(c.getTiempoIdeal() + r.nextGaussian() * c.getMargen() * 1.5));
+            resultados[i] = c.evaluar(tiempos[i]);
+        }
+        for(int rep = 0; rep < 3; rep++){
+            RecomendadorTiempos rec = new RecomendadorTiempos(catalogo);
+            long t = System.nanoTime();
+            int mascara = comidas.length - 1;
+            for(int i = 0; i < total; i++){
+                int j = i & mascara;
+                rec.registrar(comidas[j], tiempos[j], resultados[j]);
+            }
+            double s = (System.nanoTime() - t) / 1e9;
+            System.out.printf("%d sesiones en %.3f s: %.1f M sesiones/s%n", total, s, total / s / 1e6);
+            if(rep == 2){
+                for(int id = 0; id < rec.getComidas(); id++){
+                    System.out.printf("  %-12s ideal %4d s, recomendado %4d s (desviación %.1f s)%n", rec.getNombre(id),
+                            catalogo.get(id).getTiempoIdeal(), rec.recomendar(id), rec.getDesviacion(id));
+                }
+            }
+        }
+    }
+}
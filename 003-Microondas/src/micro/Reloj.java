@@ -0,0 +1,43 @@
+package micro;
+
+/**
+ * Fuente de tiempo de la cuenta atrás y de las simulaciones.
+ *
+ * Permite usar el tiempo real ({@link RelojReal}), un tiempo acelerado por
+ * cualquier factor ({@link RelojEscalado}) o un tiempo virtual que solo avanza
+ * cuando se le pide ({@link RelojVirtual}), con el que una sesión de cocinado
+ * entera se simula en microsegundos.
+ *
+ * @author Zarkrosh
+ */
+public interface Reloj {
+
+    /**
+     * Tarea programada en un reloj.
+     */
+    interface Programada {
+        /**
+         * Cancela la tarea si todavía no se ha ejecutado.
+         */
+        void cancelar();
+    }
+
+    /**
+     * @return Instante actual del reloj (ns). Solo tiene sentido restar dos valores.
+     */
+    long nanos();
+
+    /**
+     * @param nanos Duración en tiempo de este reloj (ns)
+     * @return Lo que dura en tiempo real (ns); 0 si el reloj no depende del tiempo real
+     */
+    long duracionReal(long nanos);
+
+    /**
+     * Ejecuta una tarea cuando el reloj haya avanzado un tiempo.
+     * @param tarea Tarea a ejecutar
+     * @param retraso Tiempo de este reloj hasta ejecutarla (ns)
+     * @return Tarea programada, para poder cancelarla
+     */
+    Programada programar(Runnable tarea, long retraso);
+}
@@ -0,0 +1,66 @@
+package micro;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloj que avanza un número de veces más rápido (o más lento) que el real.
+ * Cambiar el factor no produce saltos: el tiempo sigue desde donde estaba.
+ *
+ * @author Zarkrosh
+ */
+public final class RelojEscalado implements Reloj {
+    private long baseReal;
+    private long baseReloj;
+    private double factor;
+
+    /**
+     * @param factor Segundos de este reloj por cada segundo real (p.ej. 60)
+     */
+    public RelojEscalado(double factor) {
+        if(factor <= 0){
+            throw new IllegalArgumentException("El factor debe ser positivo: " + factor);
+        }
+        this.baseReal = System.nanoTime();
+        this.baseReloj = 0;
+        this.factor = factor;
+    }
+
+    /**
+     * Cambia la velocidad del reloj.
+     * @param factor Segundos de este reloj por cada segundo real
+     */
+    public synchronized void setFactor(double factor){
+        if(factor <= 0){
+            throw new IllegalArgumentException("El factor debe ser positivo: " + factor);
+        }
+        long ahora = System.nanoTime();
+        baseReloj = nanos(ahora);
+        baseReal = ahora;
+        this.factor = factor;
+    }
+
+    public synchronized double getFactor(){
+        return factor;
+    }
+
+    @Override
+    public synchronized long nanos() {
+        return nanos(System.nanoTime());
+    }
+
+    private long nanos(long real){
+        return baseReloj + (long) ((real - baseReal) * factor);
+    }
+
+    @Override
+    public synchronized long duracionReal(long nanos) {
+        return (long) Math.ceil(nanos / factor);
+    }
+
+    @Override
+    public Programada programar(Runnable tarea, long retraso) {
+        final ScheduledFuture<?> f = RelojReal.PLANIFICADOR.schedule(tarea, duracionReal(retraso), TimeUnit.NANOSECONDS);
+        return () -> f.cancel(false);
+    }
+}
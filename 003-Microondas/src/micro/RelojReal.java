@@ -0,0 +1,48 @@
+package micro;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloj de tiempo real (System.nanoTime()). Todas las tareas se ejecutan en un
+ * único hilo planificador compartido.
+ *
+ * @author Zarkrosh
+ */
+public final class RelojReal implements Reloj {
+
+    /**
+     * Planificador compartido por todos los relojes de tiempo real.
+     */
+    static final ScheduledExecutorService PLANIFICADOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "planificador-horno");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Única instancia.
+     */
+    public static final RelojReal INSTANCIA = new RelojReal();
+
+    private RelojReal() {
+    }
+
+    @Override
+    public long nanos() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public long duracionReal(long nanos) {
+        return nanos;
+    }
+
+    @Override
+    public Programada programar(Runnable tarea, long retraso) {
+        final ScheduledFuture<?> f = PLANIFICADOR.schedule(tarea, retraso, TimeUnit.NANOSECONDS);
+        return () -> f.cancel(false);
+    }
+}
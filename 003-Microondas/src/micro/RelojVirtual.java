@@ -0,0 +1,117 @@
+package micro;
+
+import java.util.PriorityQueue;
+
+/**
+ * Reloj virtual: el tiempo solo avanza al llamar a {@link #avanzar(long)} o
+ * {@link #ejecutarTodo()}, y las tareas programadas se ejecutan en ese momento
+ * en el hilo que avanza el reloj, en orden de vencimiento. Sirve para pruebas
+ * paso a paso y para simular sesiones completas sin esperar.
+ *
+ * @author Zarkrosh
+ */
+public final class RelojVirtual implements Reloj {
+    private final PriorityQueue<Tarea> pendientes = new PriorityQueue<>();
+    private long ahora = 0;
+    private long secuencia = 0;
+
+    @Override
+    public synchronized long nanos() {
+        return ahora;
+    }
+
+    @Override
+    public long duracionReal(long nanos) {
+        return 0;
+    }
+
+    @Override
+    public synchronized Programada programar(Runnable tarea, long retraso) {
+        Tarea t = new Tarea(ahora + Math.max(0, retraso), secuencia++, tarea);
+        pendientes.add(t);
+        return t;
+    }
+
+    /**
+     * Avanza el reloj ejecutando por el camino las tareas que venzan.
+     * @param nanos Tiempo a avanzar (ns)
+     */
+    public void avanzar(long nanos){
+        long objetivo;
+        synchronized(this){
+            objetivo = ahora + nanos;
+        }
+        Tarea t;
+        while((t = siguiente(objetivo)) != null){
+            t.ejecutar();
+        }
+        synchronized(this){
+            ahora = Math.max(ahora, objetivo);
+        }
+    }
+
+    /**
+     * Ejecuta todas las tareas pendientes (y las que programen ellas), saltando
+     * directamente de una a otra.
+     * @return Número de tareas ejecutadas
+     */
+    public int ejecutarTodo(){
+        int n = 0;
+        Tarea t;
+        while((t = siguiente(Long.MAX_VALUE)) != null){
+            t.ejecutar();
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Saca la siguiente tarea que vence antes del objetivo y mueve el reloj hasta ella.
+     */
+    private synchronized Tarea siguiente(long objetivo){
+        while(!pendientes.isEmpty()){
+            Tarea t = pendientes.peek();
+            if(t.cancelada){
+                pendientes.poll();
+                continue;
+            }
+            if(t.vence > objetivo){
+                return null;
+            }
+            pendientes.poll();
+            ahora = Math.max(ahora, t.vence);
+            return t;
+        }
+        return null;
+    }
+
+    private static class Tarea implements Programada, Comparable<Tarea> {
+        final long vence;
+        final long orden;
+        final Runnable tarea;
+        volatile boolean cancelada = false;
+
+        Tarea(long vence, long orden, Runnable tarea) {
+            this.vence = vence;
+            this.orden = orden;
+            this.tarea = tarea;
+        }
+
+        void ejecutar(){
+            if(!cancelada){
+                tarea.run();
+            }
+        }
+
+        @Override
+        public void cancelar() {
+            cancelada = true;
+        }
+
+        @Override
+        public int compareTo(Tarea o) {
+            int c = Long.compare(vence, o.vence);
+            return c != 0 ? c : Long.compare(orden, o.orden);
+        }
+    }
+}
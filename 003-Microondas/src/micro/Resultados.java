@@ -14,6 +14,7 @@ import java.awt.event.WindowEvent;
 public class Resultados extends javax.swing.JFrame {
 
     private int resultado;
+    private int punto = -1;
     
     /**
      * Creates new form Resultados
@@ -24,6 +25,18 @@ public class Resultados extends javax.swing.JFrame {
         cargaResultados();
     }
 
+    /**
+     * Muestra también el punto de cocción alcanzado.
+     * @param resultado Ver constantes de Comida
+     * @param punto Punto de cocción en décimas de % (ver {@link Comida#getPunto})
+     */
+    public Resultados(int resultado, int punto) {
+        this.resultado = resultado;
+        this.punto = punto;
+        initComponents();
+        cargaResultados();
+    }
+
     /**
      * This method is called from within the constructor to initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is always
@@ -80,37 +93,73 @@ public class Resultados extends javax.swing.JFrame {
     public void cargaResultados(){
         switch(resultado){
             case Comida.COCINADO_BIEN:
-                imgIcono.setIcon(new javax.swing.ImageIcon(getClass().getResource(ICONO_BIEN)));
-                comentario.setText(COMENTARIO_BIEN);
+                imgIcono.setIcon(icono(resultado));
                 comentario.setForeground(new java.awt.Color(253, 202, 71));
                 break;
             case Comida.COCINADO_POCO:
-                imgIcono.setIcon(new javax.swing.ImageIcon(getClass().getResource(ICONO_POCO)));
-                comentario.setText(COMENTARIO_POCO);
+                imgIcono.setIcon(icono(resultado));
                 comentario.setForeground(new java.awt.Color(60, 138, 236));
                 break;
             case Comida.COCINADO_MUCHO:
-                imgIcono.setIcon(new javax.swing.ImageIcon(getClass().getResource(ICONO_MUCHO)));
-                comentario.setText(COMENTARIO_MUCHO);
+                imgIcono.setIcon(icono(resultado));
                 comentario.setForeground(new java.awt.Color(255, 70, 20));
                 break;
             default:
                 System.out.println("[!] Error. Valor no válido.");
                 System.exit(-4);
         }
-        
+        escribirComentario();
         pack();
     }
 
+    /**
+     * Cambia el punto de cocción mostrado sin volver a cargar la ventana.
+     * @param punto Punto de cocción en décimas de %, o -1 para no mostrarlo
+     */
+    public void setPunto(int punto){
+        if(this.punto != punto){
+            this.punto = punto;
+            escribirComentario();
+        }
+    }
+
+    public int getResultado(){
+        return resultado;
+    }
+
+    private void escribirComentario(){
+        String texto = resultado == Comida.COCINADO_BIEN ? COMENTARIO_BIEN
+                : resultado == Comida.COCINADO_POCO ? COMENTARIO_POCO : COMENTARIO_MUCHO;
+        if(punto >= 0){
+            texto = "<html><center>" + texto + "<br><font size=-1>Punto: "
+                    + (punto / 10) + "," + (punto % 10) + " %</font></center></html>";
+        }
+        comentario.setText(texto);
+    }
+
+    /**
+     * Icono de un resultado. Cada uno se decodifica una sola vez y se comparte
+     * entre todas las ventanas.
+     */
+    private static synchronized javax.swing.ImageIcon icono(int resultado){
+        if(ICONOS[resultado] == null){
+            String ruta = resultado == Comida.COCINADO_BIEN ? ICONO_BIEN
+                    : resultado == Comida.COCINADO_POCO ? ICONO_POCO : ICONO_MUCHO;
+            ICONOS[resultado] = new javax.swing.ImageIcon(Resultados.class.getResource(ruta));
+        }
+        return ICONOS[resultado];
+    }
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JLabel comentario;
     private javax.swing.JLabel imgIcono;
     // End of variables declaration//GEN-END:variables
 
     // Paths iconos
-    private final String ICONO_BIEN = "/micro/imagenes/bien.png";
-    private final String ICONO_POCO = "/micro/imagenes/poco.png";
-    private final String ICONO_MUCHO = "/micro/imagenes/mucho.png";
+    private static final String ICONO_BIEN = "/micro/imagenes/bien.png";
+    private static final String ICONO_POCO = "/micro/imagenes/poco.png";
+    private static final String ICONO_MUCHO = "/micro/imagenes/mucho.png";
+    private static final javax.swing.ImageIcon[] ICONOS = new javax.swing.ImageIcon[3];
     // Comentarios
     private final String COMENTARIO_BIEN = "¡Al punto!";
     private final String COMENTARIO_POCO = "Frío frío...";
@@ -0,0 +1,192 @@
+package micro;
+
+import java.util.Arrays;
+
+/**
+ * Rueda jerárquica de temporizadores para muchos hornos a la vez.
+ *
+ * Cada temporizador se identifica con un entero (0..capacidad-1) y vence en un
+ * tick absoluto. Hay {@link #NIVELES} ruedas de {@link #RANURAS} ranuras: la
+ * primera cubre los próximos 64 ticks, la segunda los próximos 64², etc. Al dar
+ * la vuelta a una rueda se bajan a la inferior los temporizadores de la ranura
+ * que toca. Programar y cancelar son O(1) y avanzar un tick cuesta lo que haya
+ * que vencer o bajar.
+ *
+ * Las listas de cada ranura se guardan en arrays de enteros, así que después de
+ * crearla no reserva memoria. No es segura para varios hilos.
+ *
+ * @author Zarkrosh
+ */
+public final class RuedaTemporizadores {
+    static final int BITS = 6;
+    static final int RANURAS = 1 << BITS;
+    static final int NIVELES = 4;
+    private static final int MASCARA = RANURAS - 1;
+    private static final int VACIA = -1;
+
+    /**
+     * Recibe los temporizadores vencidos.
+     */
+    public interface Vencimiento {
+        /**
+         * @param id Temporizador vencido (ya no está programado)
+         * @param tick Tick actual
+         */
+        void vencido(int id, long tick);
+    }
+
+    private final int[] cabezas = new int[NIVELES * RANURAS];
+    private final int[] siguiente;
+    private final int[] anterior;
+    private final int[] ranura;
+    private final long[] vence;
+    private long actual = 0;
+    private int programados = 0;
+
+    /**
+     * @param capacidad Número máximo de temporizadores
+     */
+    public RuedaTemporizadores(int capacidad) {
+        Arrays.fill(cabezas, VACIA);
+        siguiente = new int[capacidad];
+        anterior = new int[capacidad];
+        ranura = new int[capacidad];
+        vence = new long[capacidad];
+        Arrays.fill(ranura, VACIA);
+    }
+
+    /**
+     * @return Tick actual
+     */
+    public long getActual(){
+        return actual;
+    }
+
+    /**
+     * @return Número de temporizadores programados
+     */
+    public int getProgramados(){
+        return programados;
+    }
+
+    /**
+     * Programa (o reprograma) un temporizador. Si el tick ya ha pasado vence
+     * en el siguiente avance.
+     * @param id Temporizador
+     * @param tick Tick absoluto de vencimiento
+     */
+    public void programar(int id, long tick){
+        if(ranura[id] != VACIA){
+            cancelar(id);
+        }
+        vence[id] = tick;
+        insertar(id, Math.max(tick, actual + 1));
+        programados++;
+    }
+
+    /**
+     * Cancela un temporizador si estaba programado.
+     * @param id Temporizador
+     */
+    public void cancelar(int id){
+        int r = ranura[id];
+        if(r == VACIA){
+            return;
+        }
+        quitar(id, r);
+        programados--;
+    }
+
+    /**
+     * Avanza la rueda hasta un tick, venciendo los temporizadores por el camino.
+     * @param hasta Tick hasta el que avanzar (incluido)
+     * @param aviso Recibe cada temporizador vencido
+     * @return Número de temporizadores vencidos
+     */
+    public int avanzar(long hasta, Vencimiento aviso){
+        int vencidos = 0;
+        while(actual < hasta){
+            if(programados == 0){
+                // Nada que hacer: salta directamente
+                actual = hasta;
+                break;
+            }
+            actual++;
+            bajar(actual);
+            int r = (int) (actual & MASCARA);
+            int id;
+            while((id = cabezas[r]) != VACIA){
+                quitar(id, r);
+                programados--;
+                if(vence[id] > actual){
+                    // Estaba más allá del alcance de la rueda: se vuelve a colocar
+                    insertar(id, vence[id]);
+                    programados++;
+                }else{
+                    vencidos++;
+                    aviso.vencido(id, actual);
+                }
+            }
+        }
+        return vencidos;
+    }
+
+    /**
+     * Al dar la vuelta a un nivel baja los temporizadores de la ranura que
+     * corresponde en el nivel superior.
+     */
+    private void bajar(long tick){
+        for(int nivel = 1; nivel < NIVELES; nivel++){
+            if(((tick >> (BITS * (nivel - 1))) & MASCARA) != 0){
+                return;
+            }
+            int r = nivel * RANURAS + (int) ((tick >> (BITS * nivel)) & MASCARA);
+            int id;
+            while((id = cabezas[r]) != VACIA){
+                quitar(id, r);
+                insertar(id, Math.max(vence[id], tick));
+            }
+        }
+    }
+
+    private void insertar(int id, long tick){
+        long delta = tick - actual;
+        int r;
+        if(delta < RANURAS){
+            r = (int) (tick & MASCARA);
+        }else{
+            int nivel = 1;
+            while(nivel < NIVELES - 1 && delta >= (1L << (BITS * (nivel + 1)))){
+                nivel++;
+            }
+            long limite = actual + (1L << (BITS * (nivel + 1))) - 1;
+            if(tick > limite){
+                // Demasiado lejos: se deja en la última ranura alcanzable
+                tick = limite;
+            }
+            r = nivel * RANURAS + (int) ((tick >> (BITS * nivel)) & MASCARA);
+        }
+        int cabeza = cabezas[r];
+        siguiente[id] = cabeza;
+        anterior[id] = VACIA;
+        if(cabeza != VACIA){
+            anterior[cabeza] = id;
+        }
+        cabezas[r] = id;
+        ranura[id] = r;
+    }
+
+    private void quitar(int id, int r){
+        int s = siguiente[id];
+        int a = anterior[id];
+        if(a != VACIA){
+            siguiente[a] = s;
+        }else{
+            cabezas[r] = s;
+        }
+        if(s != VACIA){
+            anterior[s] = a;
+        }
+        ranura[id] = VACIA;
+    }
+}
@@ -5,9 +5,28 @@
  */
 package micro;
 
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.event.WindowEvent;
 import java.util.ArrayList;
-import javax.swing.JButton;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.BorderFactory;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.ListCellRenderer;
+import javax.swing.JTextField;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.border.Border;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 /**
  *
@@ -16,6 +35,19 @@ import javax.swing.JButton;
 public class SelectorComidas extends javax.swing.JFrame {
     private ArrayList<Comida> comidas;
     private Horno horno;
+    private final ModeloComidas modelo;
+    private CeldaComida celda;
+    
+    // Búsqueda (indice, ultimaConsulta y ultimoRango solo se usan en el hilo buscador)
+    private final ExecutorService buscador = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "buscador-comidas");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicInteger consultas = new AtomicInteger();
+    private IndiceNombres indice;
+    private String ultimaConsulta = "";
+    private int[] ultimoRango;
     
     /**
      * Creates new form SelectorComidas
@@ -24,6 +56,7 @@ public class SelectorComidas extends javax.swing.JFrame {
     public SelectorComidas(ArrayList<Comida> comidas, Horno horno) {
         this.comidas = comidas;
         this.horno = horno;
+        this.modelo = new ModeloComidas(comidas);
         initComponents();
         cargarComidas();
     }
@@ -65,27 +98,127 @@ public class SelectorComidas extends javax.swing.JFrame {
     }// </editor-fold>//GEN-END:initComponents
 
     /**
-     * Carga las comidas como botones en la ventana.
+     * Carga las comidas en una lista desplazable. La lista solo pinta las
+     * celdas visibles, reutilizando un único componente, así que abrir el
+     * selector cuesta lo mismo con 4 comidas que con miles.
      */
     private void cargarComidas(){
-        // Calcula tamaño del grid
-        int tam = (int) Math.ceil(comidas.size() / 2.0);
-        pComidas.setLayout(new java.awt.GridLayout(tam, tam));
-        for(Comida c : comidas){
-            JButton btn = new JButton();
-            btn.setBackground(new java.awt.Color(255, 255, 255));
-            btn.setIcon(c.getImagen());
-            btn.addActionListener(new java.awt.event.ActionListener() {
-                public void actionPerformed(java.awt.event.ActionEvent evt) {
-                    horno.asignarComida(c);
+        final JList<Comida> lista = new JList<>(modelo);
+        lista.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        lista.setVisibleRowCount(-1);
+        // Con tamaño fijo la lista no pregunta al renderer por cada comida
+        lista.setFixedCellWidth(ANCHO_CELDA);
+        lista.setFixedCellHeight(ALTO_CELDA);
+        celda = new CeldaComida(horno.getMiniaturas(), lista);
+        lista.setCellRenderer(celda);
+        lista.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent evt) {
+                int i = lista.locationToIndex(evt.getPoint());
+                if(i >= 0 && lista.getCellBounds(i, i).contains(evt.getPoint())){
+                    horno.asignarComida(lista.getModel().getElementAt(i));
                     cerrarSelector();
                 }
-            });
-            
-            pComidas.add(btn);
-        }
+            }
+        });
+
+        JScrollPane scroll = new JScrollPane(lista);
+        scroll.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+        scroll.getVerticalScrollBar().setUnitIncrement(ALTO_CELDA / 4);
+        int columnas = Math.max(1, Math.min(COLUMNAS, comidas.size()));
+        int filas = Math.max(1, Math.min(FILAS, (comidas.size() + columnas - 1) / columnas));
+        scroll.setPreferredSize(new Dimension(
+                columnas * ANCHO_CELDA + scroll.getVerticalScrollBar().getPreferredSize().width + 4,
+                filas * ALTO_CELDA + 4));
         
+        // Búsqueda por nombre según se escribe
+        final JTextField campoBuscar = new JTextField();
+        campoBuscar.setFont(new java.awt.Font("Rubik", 0, 18));
+        campoBuscar.setToolTipText("Buscar comida");
+        campoBuscar.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                buscar(campoBuscar.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                buscar(campoBuscar.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                buscar(campoBuscar.getText());
+            }
+        });
+        campoBuscar.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                // Intro: elige la primera comida encontrada
+                if(modelo.getSize() > 0){
+                    horno.asignarComida(modelo.getElementAt(0));
+                    cerrarSelector();
+                }
+            }
+        });
+        
+        pComidas.setLayout(new BorderLayout());
+        pComidas.add(campoBuscar, BorderLayout.NORTH);
+        pComidas.add(scroll, BorderLayout.CENTER);
         pack();
+        
+        // El índice se construye en segundo plano mientras se abre la ventana
+        buscador.execute(() -> indice = new IndiceNombres(comidas));
+    }
+    
+    /**
+     * Filtra las comidas por el prefijo del nombre. La búsqueda se hace en el
+     * hilo buscador y solo se aplica si no se ha escrito nada después.
+     * @param texto Texto escrito
+     */
+    private void buscar(final String texto){
+        final int consulta = consultas.incrementAndGet();
+        buscador.execute(() -> {
+            if(consulta != consultas.get()){
+                return; // Ya hay una consulta más reciente
+            }
+            if(indice == null){
+                indice = new IndiceNombres(comidas);
+            }
+            String prefijo = IndiceNombres.normalizar(texto.trim());
+            int[] rango = null;
+            if(!prefijo.isEmpty()){
+                if(ultimoRango != null && prefijo.startsWith(ultimaConsulta)){
+                    // Se ha añadido texto: basta con buscar dentro del resultado anterior
+                    rango = indice.buscar(prefijo, ultimoRango[0], ultimoRango[1]);
+                }else{
+                    rango = indice.buscar(prefijo, 0, indice.tamano());
+                }
+            }
+            ultimaConsulta = prefijo;
+            ultimoRango = rango;
+            
+            final int[] orden = indice.getOrden();
+            final int[] resultado = rango;
+            SwingUtilities.invokeLater(() -> {
+                if(consulta != consultas.get()){
+                    return;
+                }
+                if(resultado == null){
+                    modelo.mostrarTodas();
+                }else{
+                    modelo.filtrar(orden, resultado[0], resultado[1]);
+                }
+            });
+        });
+    }
+    
+    @Override
+    public void dispose(){
+        buscador.shutdownNow();
+        if(celda != null){
+            celda.olvidar();
+        }
+        super.dispose();
     }
     
     private void cerrarSelector(){
@@ -125,4 +258,47 @@ public class SelectorComidas extends javax.swing.JFrame {
     private javax.swing.JLabel lSeleccionar;
     private javax.swing.JPanel pComidas;
     // End of variables declaration//GEN-END:variables
+
+    // Tamaño de cada celda y celdas visibles
+    private static final int ANCHO_CELDA = MiniaturasComidas.ANCHO + 10;
+    private static final int ALTO_CELDA = MiniaturasComidas.ALTO + 10;
+    private static final int COLUMNAS = 4;
+    private static final int FILAS = 3;
+
+    /**
+     * Pinta cada comida con su miniatura, o con su nombre mientras se genera.
+     */
+    private static class CeldaComida extends JLabel implements ListCellRenderer<Comida> {
+        private final MiniaturasComidas miniaturas;
+        private final Runnable repintar;
+        private final Border borde = BorderFactory.createLineBorder(new java.awt.Color(255, 255, 255), 3);
+        private final Border bordeSeleccion = BorderFactory.createLineBorder(new java.awt.Color(0, 153, 51), 3);
+
+        CeldaComida(MiniaturasComidas miniaturas, final JList<Comida> lista) {
+            this.miniaturas = miniaturas;
+            this.repintar = lista::repaint;
+            setOpaque(true);
+            setBackground(new java.awt.Color(255, 255, 255));
+            setHorizontalAlignment(SwingConstants.CENTER);
+            setFont(new java.awt.Font("Rubik", 1, 14));
+        }
+
+        /**
+         * Deja de recibir avisos de miniaturas (la lista ya no se pinta).
+         */
+        void olvidar(){
+            miniaturas.olvidar(repintar);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Comida> list, Comida c,
+                int index, boolean isSelected, boolean cellHasFocus) {
+            ImageIcon m = miniaturas.getMiniatura(c, repintar);
+            setIcon(m);
+            setText(m == null ? c.getNombre() : null);
+            setToolTipText(c.getNombre());
+            setBorder(isSelected ? bordeSeleccion : borde);
+            return this;
+        }
+    }
 }
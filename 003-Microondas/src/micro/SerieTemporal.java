@@ -0,0 +1,471 @@
+package micro;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Serie temporal comprimida en memoria (instante en segundos, valor double),
+ * con la codificación de Gorilla (Facebook, 2015).
+ *
+ * Los puntos se guardan en bloques de {@link #BLOQUE} segundos. El primero de
+ * cada bloque va entero; en los demás:
+ * <ul>
+ *   <li>Del instante se guarda la diferencia entre su salto y el anterior
+ *       (delta de deltas). Con lecturas cada segundo es siempre 0: 1 bit.</li>
+ *   <li>Del valor se guarda el XOR con el anterior. Si no cambia, 1 bit; si
+ *       cambia, solo los bits significativos, reutilizando la ventana del
+ *       anterior cuando cabe.</li>
+ * </ul>
+ * Todo se escribe en un array de longs que crece al doble, sin objetos por
+ * punto. Cada bloque recuerda su primer instante y su posición, así que una
+ * consulta por rango solo descomprime los bloques que toca.
+ *
+ * Los instantes deben llegar en orden (se permiten repetidos). No es segura
+ * para varios hilos.
+ *
+ * Uso para medir tamaño y velocidad: java micro.SerieTemporal [hornos] [días]
+ *
+ * @author Zarkrosh
+ */
+public final class SerieTemporal {
+    // Duración de un bloque (s)
+    static final long BLOQUE = 2 * 3600;
+
+    /**
+     * Recibe los puntos de una consulta.
+     */
+    public interface Visitante {
+        void punto(long instante, double valor);
+    }
+
+    /**
+     * Resumen de una serie por intervalos iguales: número de puntos, suma,
+     * mínimo y máximo de cada uno.
+     */
+    public static final class Resumen {
+        private final long desde;
+        private final long paso;
+        private final long[] cuentas;
+        private final double[] sumas;
+        private final double[] minimos;
+        private final double[] maximos;
+
+        Resumen(long desde, long paso, int intervalos) {
+            this.desde = desde;
+            this.paso = paso;
+            cuentas = new long[intervalos];
+            sumas = new double[intervalos];
+            minimos = new double[intervalos];
+            maximos = new double[intervalos];
+            Arrays.fill(minimos, Double.NaN);
+            Arrays.fill(maximos, Double.NaN);
+        }
+
+        void anadir(long instante, double valor){
+            int i = (int) ((instante - desde) / paso);
+            if(cuentas[i]++ == 0){
+                minimos[i] = maximos[i] = valor;
+            }else{
+                minimos[i] = Math.min(minimos[i], valor);
+                maximos[i] = Math.max(maximos[i], valor);
+            }
+            sumas[i] += valor;
+        }
+
+        public int getIntervalos(){
+            return cuentas.length;
+        }
+
+        /**
+         * @param i Intervalo
+         * @return Instante en que empieza
+         */
+        public long getInicio(int i){
+            return desde + i * paso;
+        }
+
+        public long getCuenta(int i){
+            return cuentas[i];
+        }
+
+        public double getSuma(int i){
+            return sumas[i];
+        }
+
+        /**
+         * @param i Intervalo
+         * @return Media de sus puntos, NaN si no tiene
+         */
+        public double getMedia(int i){
+            return cuentas[i] == 0 ? Double.NaN : sumas[i] / cuentas[i];
+        }
+
+        /**
+         * @param i Intervalo
+         * @return Mínimo de sus puntos, NaN si no tiene
+         */
+        public double getMinimo(int i){
+            return minimos[i];
+        }
+
+        /**
+         * @param i Intervalo
+         * @return Máximo de sus puntos, NaN si no tiene
+         */
+        public double getMaximo(int i){
+            return maximos[i];
+        }
+    }
+
+    // Bits escritos
+    private long[] palabras = new long[64];
+    private long bits = 0;
+
+    // Bloques: primer instante y posición (bit) de cada uno
+    private long[] inicios = new long[8];
+    private long[] posiciones = new long[8];
+    private int bloques = 0;
+    private long puntos = 0;
+
+    // Estado del último punto escrito
+    private long ultimoInstante = Long.MIN_VALUE;
+    private long ultimoSalto = 0;
+    private long ultimoValor = 0;       // Bits del double
+    private int ceros = -1;             // Ventana del último XOR: ceros a la izquierda (-1 si no hay)
+    private int significativos = 0;
+
+    /**
+     * Añade un punto al final de la serie.
+     * @param instante Instante (s), no anterior al último añadido
+     * @param valor Valor
+     */
+    public void anadir(long instante, double valor){
+        if(instante < ultimoInstante){
+            throw new IllegalArgumentException("Instante " + instante + " anterior al último (" + ultimoInstante + ").");
+        }
+        long v = Double.doubleToRawLongBits(valor);
+        if(bloques == 0 || instante >= inicios[bloques - 1] + BLOQUE){
+            nuevoBloque(instante);
+            escribir(instante, 64);
+            escribir(v, 64);
+            ultimoSalto = 0;
+            ceros = -1;
+        }else{
+            long salto = instante - ultimoInstante;
+            escribirDeltaDeltas(salto - ultimoSalto);
+            ultimoSalto = salto;
+            escribirXor(v ^ ultimoValor);
+        }
+        ultimoInstante = instante;
+        ultimoValor = v;
+        puntos++;
+    }
+
+    /**
+     * Recorre los puntos de un rango de instantes.
+     * @param desde Primer instante (incluido)
+     * @param hasta Último instante (excluido)
+     * @param visitante Recibe cada punto, en orden
+     * @return Número de puntos recorridos
+     */
+    public long recorrer(long desde, long hasta, Visitante visitante){
+        if(bloques == 0 || hasta <= desde){
+            return 0;
+        }
+        // Último bloque que empieza antes o en 'desde'
+        int b = Arrays.binarySearch(inicios, 0, bloques, desde);
+        if(b < 0){
+            b = Math.max(0, -b - 2);
+        }
+        long n = 0;
+        Lector l = new Lector();
+        for(; b < bloques && inicios[b] < hasta; b++){
+            long fin = b + 1 < bloques ? posiciones[b + 1] : bits;
+            l.empezar(posiciones[b]);
+            while(l.posicion < fin){
+                l.siguiente();
+                if(l.instante >= hasta){
+                    return n;
+                }
+                if(l.instante >= desde){
+                    visitante.punto(l.instante, Double.longBitsToDouble(l.valor));
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Resume un rango en intervalos de la misma duración.
+     * @param desde Primer instante (incluido)
+     * @param hasta Último instante (excluido)
+     * @param paso Duración de cada intervalo (s)
+     * @return Resumen (el último intervalo puede quedar cortado en 'hasta')
+     */
+    public Resumen resumir(long desde, long hasta, long paso){
+        if(paso <= 0 || hasta < desde){
+            throw new IllegalArgumentException("Rango o paso no válido.");
+        }
+        long intervalos = (hasta - desde + paso - 1) / paso;
+        if(intervalos > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Demasiados intervalos: " + intervalos);
+        }
+        final Resumen r = new Resumen(desde, paso, (int) intervalos);
+        recorrer(desde, hasta, r::anadir);
+        return r;
+    }
+
+    public long getPuntos(){
+        return puntos;
+    }
+
+    /**
+     * @return Primer instante de la serie, o Long.MIN_VALUE si está vacía
+     */
+    public long getPrimero(){
+        return bloques == 0 ? Long.MIN_VALUE : inicios[0];
+    }
+
+    /**
+     * @return Último instante de la serie, o Long.MIN_VALUE si está vacía
+     */
+    public long getUltimo(){
+        return ultimoInstante;
+    }
+
+    /**
+     * @return Bytes ocupados por los datos comprimidos y el índice de bloques
+     */
+    public long getBytes(){
+        return (bits + 7) / 8 + bloques * 16L;
+    }
+
+    /**
+     * Ajusta los arrays a lo que se ha escrito.
+     */
+    public void compactar(){
+        palabras = Arrays.copyOf(palabras, (int) ((bits + 63) >>> 6) + 1);
+        inicios = Arrays.copyOf(inicios, Math.max(1, bloques));
+        posiciones = Arrays.copyOf(posiciones, Math.max(1, bloques));
+    }
+
+    private void nuevoBloque(long instante){
+        if(bloques == inicios.length){
+            inicios = Arrays.copyOf(inicios, bloques * 2);
+            posiciones = Arrays.copyOf(posiciones, bloques * 2);
+        }
+        inicios[bloques] = instante;
+        posiciones[bloques] = bits;
+        bloques++;
+    }
+
+    /**
+     * Delta de deltas con prefijos de longitud variable: 0 | 10+7 | 110+9 | 1110+12 | 1111+64 bits.
+     */
+    private void escribirDeltaDeltas(long dd){
+        if(dd == 0){
+            escribir(0, 1);
+        }else if(dd >= -63 && dd <= 64){
+            escribir(0b10, 2);
+            escribir(dd, 7);
+        }else if(dd >= -255 && dd <= 256){
+            escribir(0b110, 3);
+            escribir(dd, 9);
+        }else if(dd >= -2047 && dd <= 2048){
+            escribir(0b1110, 4);
+            escribir(dd, 12);
+        }else{
+            escribir(0b1111, 4);
+            escribir(dd, 64);
+        }
+    }
+
+    /**
+     * XOR con el valor anterior: 0 si es igual; 10 y los bits si caben en la
+     * ventana anterior; 11, ceros a la izquierda (5 bits), longitud (6 bits,
+     * 0 = 64) y los bits si no.
+     */
+    private void escribirXor(long xor){
+        if(xor == 0){
+            escribir(0, 1);
+            return;
+        }
+        int izquierda = Math.min(31, Long.numberOfLeadingZeros(xor));
+        int derecha = Long.numberOfTrailingZeros(xor);
+        if(ceros >= 0 && izquierda >= ceros && derecha >= 64 - ceros - significativos){
+            escribir(0b10, 2);
+            escribir(xor >>> (64 - ceros - significativos), significativos);
+        }else{
+            ceros = izquierda;
+            significativos = 64 - izquierda - derecha;
+            escribir(0b11, 2);
+            escribir(ceros, 5);
+            escribir(significativos, 6);
+            escribir(xor >>> derecha, significativos);
+        }
+    }
+
+    /**
+     * Escribe los n bits bajos de un valor (n entre 1 y 64).
+     */
+    private void escribir(long valor, int n){
+        if(n < 64){
+            valor &= (1L << n) - 1;
+        }
+        int i = (int) (bits >>> 6);
+        if(i + 1 >= palabras.length){
+            palabras = Arrays.copyOf(palabras, palabras.length * 2);
+        }
+        int libres = 64 - (int) (bits & 63);
+        if(n <= libres){
+            palabras[i] |= valor << (libres - n);
+        }else{
+            palabras[i] |= valor >>> (n - libres);
+            palabras[i + 1] |= valor << (64 - (n - libres));
+        }
+        bits += n;
+    }
+
+    /**
+     * Descomprime los puntos de un bloque, uno detrás de otro.
+     */
+    private final class Lector {
+        long posicion;
+        long instante;
+        long valor;
+        private long salto;
+        private int ceros;
+        private int significativos;
+        private boolean primero;
+
+        void empezar(long posicion){
+            this.posicion = posicion;
+            primero = true;
+        }
+
+        void siguiente(){
+            if(primero){
+                instante = leer(64);
+                valor = leer(64);
+                salto = 0;
+                primero = false;
+                return;
+            }
+            salto += leerDeltaDeltas();
+            instante += salto;
+            if(leer(1) == 1){
+                if(leer(1) == 1){
+                    ceros = (int) leer(5);
+                    significativos = (int) leer(6);
+                    if(significativos == 0){
+                        significativos = 64;
+                    }
+                }
+                valor ^= leer(significativos) << (64 - ceros - significativos);
+            }
+        }
+
+        private long leerDeltaDeltas(){
+            if(leer(1) == 0){
+                return 0;
+            }
+            if(leer(1) == 0){
+                return conSigno(leer(7), 7);
+            }
+            if(leer(1) == 0){
+                return conSigno(leer(9), 9);
+            }
+            if(leer(1) == 0){
+                return conSigno(leer(12), 12);
+            }
+            return leer(64);
+        }
+
+        /**
+         * Los rangos son asimétricos (p.ej. -63..64 en 7 bits): lo que pase
+         * del máximo es negativo.
+         */
+        private long conSigno(long v, int n){
+            return v > (1L << (n - 1)) ? v - (1L << n) : v;
+        }
+
+        private long leer(int n){
+            int i = (int) (posicion >>> 6);
+            int usados = (int) (posicion & 63);
+            long v = palabras[i] << usados;
+            if(usados + n > 64){
+                v |= palabras[i + 1] >>> (64 - usados);
+            }
+            posicion += n;
+            return n == 64 ? v : v >>> (64 - n);
+        }
+    }
+
+    public static void main(String[] args){
+        int hornos = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int dias = args.length > 1 ? Integer.parseInt(args[1]) : 365;
+        Random r = new Random(42);
+        SerieTemporal[] series = new SerieTemporal[hornos];
+        long t = System.nanoTime();
+        long total = 0;
+        for(int h = 0; h < hornos; h++){
+            series[h] = new SerieTemporal();
+            generarAnio(series[h], dias, r);
+            series[h].compactar();
+            total += series[h].getPuntos();
+        }
+        double sEscritura = (System.nanoTime() - t) / 1e9;
+        long bytes = 0;
+        for(SerieTemporal s : series){
+            bytes += s.getBytes();
+        }
+        System.out.printf("%d hornos, %d días: %d lecturas (1/s en marcha), %.2f MB (%.2f bits por lectura, sin comprimir %.1f MB)%n",
+                hornos, dias, total, bytes / 1e6, bytes * 8.0 / total, total * 16 / 1e6);
+        System.out.printf("Escritura: %.1f M lecturas/s%n", total / sEscritura / 1e6);
+
+        // Rango de un día a mitad del año
+        SerieTemporal s = series[0];
+        long dia = 86400;
+        long desde = s.getPrimero() + dias / 2 * dia;
+        t = System.nanoTime();
+        final double[] suma = new double[1];
+        long n = s.recorrer(desde, desde + dia, (instante, valor) -> suma[0] += valor);
+        System.out.printf("Un día del horno 1: %d lecturas, %.1f Wh en %.3f ms%n", n, suma[0] / 3600, (System.nanoTime() - t) / 1e6);
+
+        // Consumo por día de todo el año
+        t = System.nanoTime();
+        Resumen diario = s.resumir(s.getPrimero(), s.getPrimero() + dias * dia, dia);
+        double ms = (System.nanoTime() - t) / 1e6;
+        double maximo = 0;
+        double energia = 0;
+        for(int i = 0; i < diario.getIntervalos(); i++){
+            energia += diario.getSuma(i);
+            maximo = Math.max(maximo, diario.getSuma(i));
+        }
+        System.out.printf("Resumen diario del horno 1: %d días en %.1f ms, %.1f kWh en total, día máximo %.2f kWh%n",
+                diario.getIntervalos(), ms, energia / 3.6e6, maximo / 3.6e6);
+    }
+
+    /**
+     * Lecturas de potencia de un horno durante unos días: unas cuantas
+     * sesiones al día, con programas de varias fases de vez en cuando.
+     */
+    private static void generarAnio(SerieTemporal s, int dias, Random r){
+        long base = 1735689600L;        // 1/1/2025
+        double vatios = MedidorEnergia.VATIOS;
+        for(int d = 0; d < dias; d++){
+            long instante = base + d * 86400L + 7 * 3600;
+            int sesiones = 10 + r.nextInt(20);
+            for(int k = 0; k < sesiones; k++){
+                instante += 60 + r.nextInt(3000);
+                int duracion = 30 + r.nextInt(600);
+                boolean programa = r.nextInt(4) == 0;
+                for(int i = 0; i < duracion; i++){
+                    int potencia = !programa ? 100 : i < duracion / 2 ? 100 : i < duracion * 3 / 4 ? 50 : 0;
+                    s.anadir(instante++, vatios * potencia / 100);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package micro;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Simulación física del calentamiento de una comida en el microondas.
+ *
+ * La comida es un cubo de n x n x n celdas. En cada paso se resuelve la
+ * ecuación del calor por diferencias finitas (esquema explícito de 7 puntos):
+ * el calor se difunde entre celdas vecinas, la superficie intercambia calor con
+ * el aire del horno y las microondas calientan cada celda según su profundidad
+ * (decae exponencialmente desde la cara más cercana).
+ *
+ * Las temperaturas se guardan en dos arrays de float que se alternan en cada
+ * paso, y el cubo se reparte por capas entre los hilos de un ForkJoinPool.
+ *
+ * Uso para medir la velocidad: java micro.SimuladorCalor [n] [segundos]
+ *
+ * @author Zarkrosh
+ */
+public final class SimuladorCalor {
+    // Propiedades físicas (parecidas a las del agua)
+    static final float DIFUSIVIDAD = 1.4e-7f;      // m²/s
+    static final float CONDUCTIVIDAD = 0.5f;       // W/(m·K)
+    static final float CONVECCION = 10f;           // W/(m²·K), superficie-aire
+    static final float PENETRACION = 0.015f;       // m, profundidad de las microondas
+    static final float T_AMBIENTE = 20f;           // ºC
+    static final float LADO = 0.1f;                // m
+
+    private final int n;
+    private final float dt;
+    private final int pasosPorSegundo;
+    private final float r;              // DIFUSIVIDAD * dt / dx²
+    private final float beta;           // Pérdida hacia el aire en las caras
+    private final float[][] fuente;     // Calor de las microondas (0..1) en una fila [profundidad de y,z][x]
+    private final int[] profundidad;    // Distancia de cada coordenada a la cara más cercana
+    private final ForkJoinPool pool;
+    private final int umbral;           // Capas por tarea
+
+    private float[] actual;
+    private float[] siguiente;
+    private float calentamiento = 1f;   // ºC/s en la superficie a máxima potencia
+    private long pasos = 0;
+
+    /**
+     * @param n Celdas por lado
+     * @param pool Hilos con los que se reparte cada paso
+     */
+    public SimuladorCalor(int n, ForkJoinPool pool) {
+        if(n < 3){
+            throw new IllegalArgumentException("La rejilla debe tener al menos 3 celdas por lado.");
+        }
+        this.n = n;
+        this.pool = pool;
+        float dx = LADO / n;
+        // Paso estable (r <= 1/6) y divisor exacto del segundo
+        double dtMax = 0.9 * dx * dx / (6 * DIFUSIVIDAD);
+        pasosPorSegundo = (int) Math.max(1, Math.ceil(1 / dtMax));
+        dt = 1f / pasosPorSegundo;
+        r = DIFUSIVIDAD * dt / (dx * dx);
+        beta = CONVECCION * dx / CONDUCTIVIDAD;
+        umbral = Math.max(1, n / (4 * pool.getParallelism()));
+
+        int total = n * n * n;
+        actual = new float[total];
+        siguiente = new float[total];
+        // La profundidad de una celda es la menor de sus tres coordenadas, así
+        // que todas las filas con la misma profundidad en (y, z) reciben el
+        // mismo calor: basta una fila por profundidad en vez de un valor por celda
+        profundidad = new int[n];
+        for(int i = 0; i < n; i++){
+            profundidad[i] = Math.min(i, n - 1 - i);
+        }
+        fuente = new float[(n + 1) / 2][n];
+        for(int d = 0; d < fuente.length; d++){
+            for(int x = 0; x < n; x++){
+                int prof = Math.min(d, profundidad[x]);
+                fuente[d][x] = (float) Math.exp(-(prof + 0.5) * dx / PENETRACION);
+            }
+        }
+        reiniciar(T_AMBIENTE);
+    }
+
+    /**
+     * Pone toda la comida a la misma temperatura.
+     * @param temperatura ºC
+     */
+    public void reiniciar(float temperatura){
+        Arrays.fill(actual, temperatura);
+        pasos = 0;
+    }
+
+    /**
+     * @param gradosPorSegundo Calentamiento de la superficie a máxima potencia (ºC/s)
+     */
+    public void setCalentamiento(float gradosPorSegundo){
+        this.calentamiento = gradosPorSegundo;
+    }
+
+    /**
+     * Simula un tiempo con el horno a una potencia.
+     * @param segundos Segundos a simular
+     * @param potencia Fracción de la potencia máxima (0 = reposo)
+     */
+    public void avanzar(int segundos, float potencia){
+        float q = calentamiento * potencia * dt;
+        for(int s = 0; s < segundos; s++){
+            for(int p = 0; p < pasosPorSegundo; p++){
+                pool.invoke(new Capas(0, n, q));
+                float[] t = actual;
+                actual = siguiente;
+                siguiente = t;
+                pasos++;
+            }
+        }
+    }
+
+    /**
+     * @return Temperatura en el centro de la comida (ºC)
+     */
+    public float getTemperaturaCentro(){
+        int c = n / 2;
+        if(n % 2 == 1){
+            return actual[(c * n + c) * n + c];
+        }
+        // Media de las 8 celdas centrales
+        float suma = 0;
+        for(int z = c - 1; z <= c; z++){
+            for(int y = c - 1; y <= c; y++){
+                for(int x = c - 1; x <= c; x++){
+                    suma += actual[(z * n + y) * n + x];
+                }
+            }
+        }
+        return suma / 8;
+    }
+
+    /**
+     * @return Temperatura más alta de la comida (ºC)
+     */
+    public float getTemperaturaMaxima(){
+        float max = Float.NEGATIVE_INFINITY;
+        for(float t : actual){
+            max = Math.max(max, t);
+        }
+        return max;
+    }
+
+    public int getTamano(){
+        return n;
+    }
+
+    public int getPasosPorSegundo(){
+        return pasosPorSegundo;
+    }
+
+    public long getPasos(){
+        return pasos;
+    }
+
+    /**
+     * Calcula un paso para las capas z0..z1-1.
+     */
+    private void calcular(int z0, int z1, float q){
+        final float[] a = actual;
+        final float[] b = siguiente;
+        final int[] p = profundidad;
+        final int nn = n * n;
+        final float seis = 6 * r;
+        for(int z = z0; z < z1; z++){
+            for(int y = 0; y < n; y++){
+                int fila = (z * n + y) * n;
+                float[] f = fuente[Math.min(p[y], p[z])];
+                if(z == 0 || z == n - 1 || y == 0 || y == n - 1){
+                    for(int x = 0; x < n; x++){
+                        b[fila + x] = celdaBorde(a, fila + x, x, y, z, q);
+                    }
+                    continue;
+                }
+                b[fila] = celdaBorde(a, fila, 0, y, z, q);
+                // Interior: todas las vecinas existen
+                for(int x = 1; x < n - 1; x++){
+                    int i = fila + x;
+                    float c = a[i];
+                    float suma = a[i - 1] + a[i + 1] + a[i - n] + a[i + n] + a[i - nn] + a[i + nn];
+                    b[i] = c + r * suma - seis * c + q * f[x];
+                }
+                b[fila + n - 1] = celdaBorde(a, fila + n - 1, n - 1, y, z, q);
+            }
+        }
+    }
+
+    /**
+     * Celda en una cara: las vecinas que caen fuera se sustituyen por el aire,
+     * amortiguado según la convección.
+     */
+    private float celdaBorde(float[] a, int i, int x, int y, int z, float q){
+        float c = a[i];
+        float fuera = c + beta * (T_AMBIENTE - c);
+        int nn = n * n;
+        float suma = (x > 0 ? a[i - 1] : fuera) + (x < n - 1 ? a[i + 1] : fuera)
+                + (y > 0 ? a[i - n] : fuera) + (y < n - 1 ? a[i + n] : fuera)
+                + (z > 0 ? a[i - nn] : fuera) + (z < n - 1 ? a[i + nn] : fuera);
+        return c + r * (suma - 6 * c) + q * fuente[Math.min(profundidad[y], profundidad[z])][x];
+    }
+
+    /**
+     * Reparte las capas entre los hilos dividiendo por la mitad.
+     */
+    private class Capas extends RecursiveAction {
+        private final int z0;
+        private final int z1;
+        private final float q;
+
+        Capas(int z0, int z1, float q) {
+            this.z0 = z0;
+            this.z1 = z1;
+            this.q = q;
+        }
+
+        @Override
+        protected void compute() {
+            if(z1 - z0 <= umbral){
+                calcular(z0, z1, q);
+                return;
+            }
+            int m = (z0 + z1) >>> 1;
+            invokeAll(new Capas(z0, m, q), new Capas(m, z1, q));
+        }
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        SimuladorCalor sim = new SimuladorCalor(n, pool);
+        sim.avanzar(2, 1f);     // Calentamiento de la JVM
+
+        long t = System.nanoTime();
+        sim.avanzar(segundos, 1f);
+        double real = (System.nanoTime() - t) / 1e9;
+        double celdas = (double) n * n * n * sim.getPasosPorSegundo() * segundos;
+        double ritmo = segundos / real;
+        System.out.printf("Rejilla %d³, %d hilos, %d pasos por segundo simulado%n", n, pool.getParallelism(), sim.getPasosPorSegundo());
+        System.out.printf("%d s simulados en %.2f s: %.1f s simulados/s, %.0f M celdas/s%n", segundos, real, ritmo, celdas / real / 1e6);
+        // En modo rápido un segundo simulado dura 10 ms
+        System.out.printf("Modo rápido: necesita 100 s simulados/s -> %s%n", ritmo >= 100 ? "va por delante" : "se queda atrás");
+        System.out.printf("Centro: %.2f ºC, máxima: %.2f ºC%n", sim.getTemperaturaCentro(), sim.getTemperaturaMaxima());
+    }
+}
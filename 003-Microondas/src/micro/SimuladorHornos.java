@@ -0,0 +1,401 @@
+package micro;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulación sin interfaz de muchos microondas a la vez, para pruebas de carga.
+ *
+ * Cada horno es un {@link MotorHorno} al que un "usuario" marca un tiempo
+ * cercano al ideal de una comida del catálogo, lo pone en marcha y a veces lo
+ * pausa un rato. Los hornos se reparten entre unos pocos hilos; cada hilo mueve
+ * los suyos con una {@link RuedaTemporizadores} de resolución 1 ms, así que no
+ * hace falta un hilo ni un Timer por horno. Al final se muestra cuántas comidas
+ * han salido bien, frías o quemadas.
+ *
+ * El tiempo lo marca un {@link Reloj}: el real, uno acelerado (p.ej. "x60") o
+ * uno virtual, con el que los hilos no esperan nunca y avanzan sus ruedas tan
+ * rápido como pueden, así que cada sesión cuesta microsegundos.
+ *
+ * Si se indica la propiedad "micro.diario", cada sesión terminada se guarda en
+ * ese {@link DiarioSesiones}, marcada como del simulador para que el horno no
+ * aprenda de ella. Con "micro.catalogo" se usa otro catálogo (ver
+ * {@link #cargarCatalogo()}).
+ *
+ * Uso: java micro.SimuladorHornos [hornos] [hilos] [milisPorSegundo] [semilla] [real|xFACTOR|virtual]
+ *
+ * @author Zarkrosh
+ */
+public class SimuladorHornos {
+    // Resolución de las ruedas
+    static final long NANOS_TICK = 1000000L;
+    // Ticks que avanza cada vuelta con el reloj virtual
+    static final long SALTO_VIRTUAL = 1 << 16;
+    // Probabilidad de que el usuario pause el horno una vez
+    static final double PROB_PAUSA = 0.25;
+    // Pausa máxima (segundos simulados)
+    static final int PAUSA_MAX = 30;
+
+    // Fases de cada horno
+    private static final int ESPERANDO = 0;
+    private static final int ANTES_PAUSA = 1;
+    private static final int PAUSADO = 2;
+    private static final int HASTA_FIN = 3;
+    private static final int TERMINADO = 4;
+
+    private final List<Comida> comidas;
+    private final Grupo[] grupos;
+    private final long milisPorSegundo;
+    private final Reloj reloj;
+    private final boolean virtual;
+    private DiarioSesiones diario = null;
+    private long t0;
+    private long duracion;
+
+    /**
+     * @param comidas Catálogo
+     * @param hornos Número de hornos
+     * @param hilos Número de hilos
+     * @param milisPorSegundo Duración real de un segundo simulado
+     * @param semilla Semilla aleatoria (misma semilla, mismos usuarios)
+     */
+    public SimuladorHornos(List<Comida> comidas, int hornos, int hilos, long milisPorSegundo, long semilla) {
+        this(comidas, hornos, hilos, milisPorSegundo, semilla, RelojReal.INSTANCIA);
+    }
+
+    /**
+     * @param comidas Catálogo
+     * @param hornos Número de hornos
+     * @param hilos Número de hilos
+     * @param milisPorSegundo Duración de un segundo simulado en el reloj
+     * @param semilla Semilla aleatoria (misma semilla, mismos usuarios)
+     * @param reloj Reloj que marca el ritmo. Si no depende del tiempo real
+     *              (p.ej. {@link RelojVirtual}) la simulación no espera nunca.
+     */
+    public SimuladorHornos(List<Comida> comidas, int hornos, int hilos, long milisPorSegundo, long semilla, Reloj reloj) {
+        if(comidas.isEmpty()){
+            throw new IllegalArgumentException("El catálogo está vacío.");
+        }
+        this.comidas = comidas;
+        this.milisPorSegundo = milisPorSegundo;
+        this.reloj = reloj;
+        this.virtual = reloj.duracionReal(NANOS_TICK) == 0;
+        this.grupos = new Grupo[hilos];
+        for(int i = 0; i < hilos; i++){
+            int desde = (int) ((long) hornos * i / hilos);
+            int hasta = (int) ((long) hornos * (i + 1) / hilos);
+            grupos[i] = new Grupo(hasta - desde, new Random(semilla + i));
+        }
+    }
+
+    /**
+     * @param diario Diario donde guardar cada sesión terminada (null para no guardarlas)
+     */
+    public void setDiario(DiarioSesiones diario){
+        this.diario = diario;
+    }
+
+    /**
+     * Ejecuta la simulación hasta que terminan todos los hornos.
+     * @throws InterruptedException Si se interrumpe la espera
+     */
+    public void ejecutar() throws InterruptedException {
+        Thread[] hilos = new Thread[grupos.length];
+        long inicio = System.nanoTime();
+        t0 = reloj.nanos();
+        for(int i = 0; i < grupos.length; i++){
+            hilos[i] = new Thread(grupos[i], "simulador-" + i);
+            hilos[i].start();
+        }
+        for(Thread h : hilos){
+            h.join();
+        }
+        duracion = System.nanoTime() - inicio;
+    }
+
+    /**
+     * @return Resultados por comida: [comida][COCINADO_BIEN/POCO/MUCHO]
+     */
+    public long[][] getResultados(){
+        long[][] total = new long[comidas.size()][3];
+        for(Grupo g : grupos){
+            for(int c = 0; c < comidas.size(); c++){
+                for(int r = 0; r < 3; r++){
+                    total[c][r] += g.resultados[c * 3 + r];
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return Tiempos recomendados aprendidos de todas las sesiones (el
+     *         identificador de cada comida es su posición en el catálogo)
+     */
+    public RecomendadorTiempos getRecomendador(){
+        RecomendadorTiempos total = new RecomendadorTiempos(comidas);
+        for(Grupo g : grupos){
+            total.sumar(g.recomendador);
+        }
+        return total;
+    }
+
+    /**
+     * Escribe el resumen de la simulación.
+     */
+    public void imprimirResumen(){
+        long[][] res = getResultados();
+        long sesiones = 0;
+        long retraso = 0;
+        long ticks = 0;
+        for(Grupo g : grupos){
+            sesiones += g.motores.length;
+            retraso = Math.max(retraso, g.retrasoMax);
+            ticks = Math.max(ticks, g.ultimoTick);
+        }
+        System.out.printf("%d hornos, %d hilos, 1 s simulado = %d ms de reloj%s%n", sesiones, grupos.length,
+                milisPorSegundo, virtual ? " (virtual)" : "");
+        System.out.printf("Tiempo de reloj: %.2f s, tiempo real: %.3f s (%.2f us por sesión)%n", ticks * NANOS_TICK / 1e9,
+                duracion / 1e9, duracion / 1e3 / Math.max(1, sesiones));
+        if(!virtual){
+            System.out.printf("Retraso máximo de las ruedas: %d ms%n", retraso);
+        }
+        RecomendadorTiempos rec = getRecomendador();
+        System.out.printf("%-20s %10s %8s %8s %8s %8s %12s%n", "Comida", "Sesiones", "Bien", "Poco", "Mucho", "Ideal", "Recomendado");
+        for(int c = 0; c < res.length; c++){
+            long n = res[c][0] + res[c][1] + res[c][2];
+            if(n == 0) continue;
+            System.out.printf("%-20s %10d %7.1f%% %7.1f%% %7.1f%% %7ds %11ds%n", comidas.get(c).getNombre(), n,
+                    100.0 * res[c][Comida.COCINADO_BIEN] / n,
+                    100.0 * res[c][Comida.COCINADO_POCO] / n,
+                    100.0 * res[c][Comida.COCINADO_MUCHO] / n,
+                    comidas.get(c).getTiempoIdeal(), rec.recomendar(c));
+        }
+    }
+
+    /**
+     * Hornos que mueve un mismo hilo.
+     */
+    private class Grupo implements Runnable, RuedaTemporizadores.Vencimiento {
+        final MotorHorno[] motores;
+        final int[] comida;
+        final int[] programado;
+        final int[] fase;
+        final long[] pausaEn;       // Ticks desde el inicio hasta la pausa
+        final long[] pausaDura;     // Ticks de pausa
+        final long[] resultados;
+        final RecomendadorTiempos recomendador = new RecomendadorTiempos(comidas);
+        final RuedaTemporizadores rueda;
+        int terminados = 0;
+        long retrasoMax = 0;
+        long ultimoTick = 0;        // Tick en que terminó el último horno
+
+        Grupo(int n, Random r){
+            motores = new MotorHorno[n];
+            comida = new int[n];
+            programado = new int[n];
+            fase = new int[n];
+            pausaEn = new long[n];
+            pausaDura = new long[n];
+            resultados = new long[comidas.size() * 3];
+            rueda = new RuedaTemporizadores(n);
+            for(int i = 0; i < n; i++){
+                int c = r.nextInt(comidas.size());
+                Comida co = comidas.get(c);
+                // El usuario marca un tiempo alrededor del ideal
+                int tiempo = (int) Math.round(co.getTiempoIdeal() + r.nextGaussian() * co.getMargen() * 1.5);
+                tiempo = Math.max(1, Math.min(99 * 60 + 59, tiempo));
+                MotorHorno m = new MotorHorno();
+                marcar(m, tiempo);
+                motores[i] = m;
+                comida[i] = c;
+                programado[i] = tiempo;
+                fase[i] = ESPERANDO;
+                if(r.nextDouble() < PROB_PAUSA){
+                    pausaEn[i] = 1 + (long) (r.nextDouble() * tiempo * milisPorSegundo);
+                    pausaDura[i] = 1 + (long) (r.nextDouble() * PAUSA_MAX * milisPorSegundo);
+                }else{
+                    pausaEn[i] = -1;
+                }
+                // Los usuarios llegan durante el primer segundo de reloj
+                rueda.programar(i, 1 + r.nextInt(1000));
+            }
+        }
+
+        /**
+         * Marca el tiempo con las teclas, como lo haría el usuario.
+         */
+        private void marcar(MotorHorno m, int tiempo){
+            int mm = tiempo / 60;
+            int ss = tiempo % 60;
+            if(mm >= 10) m.anadirDigito(mm / 10);
+            if(mm > 0) m.anadirDigito(mm % 10);
+            if(mm > 0 || ss >= 10) m.anadirDigito(ss / 10);
+            m.anadirDigito(ss % 10);
+        }
+
+        @Override
+        public void run() {
+            while(terminados < motores.length){
+                if(virtual){
+                    // Sin esperas: el tiempo es el de la propia rueda
+                    rueda.avanzar(rueda.getActual() + SALTO_VIRTUAL, this);
+                    continue;
+                }
+                long objetivo = (reloj.nanos() - t0) / NANOS_TICK;
+                long retraso = objetivo - rueda.getActual();
+                if(retraso > retrasoMax){
+                    retrasoMax = retraso;
+                }
+                rueda.avanzar(objetivo, this);
+                long siguiente = reloj.duracionReal(t0 + (objetivo + 1) * NANOS_TICK - reloj.nanos());
+                if(siguiente > 0){
+                    LockSupport.parkNanos(siguiente);
+                }
+            }
+        }
+
+        @Override
+        public void vencido(int id, long tick) {
+            MotorHorno m = motores[id];
+            long ahora = t0 + tick * NANOS_TICK;
+            switch(fase[id]){
+                case ESPERANDO:
+                    m.iniciar(ahora, milisPorSegundo);
+                    if(pausaEn[id] >= 0){
+                        fase[id] = ANTES_PAUSA;
+                        rueda.programar(id, tick + pausaEn[id]);
+                    }else{
+                        programarFin(id, m);
+                    }
+                    break;
+                case ANTES_PAUSA:
+                    if(m.actualizar(ahora) == MotorHorno.FIN){
+                        terminar(id, m, ahora, 0);
+                    }else{
+                        m.pausar(ahora);
+                        fase[id] = PAUSADO;
+                        rueda.programar(id, tick + pausaDura[id]);
+                    }
+                    break;
+                case PAUSADO:
+                    m.iniciar(ahora, milisPorSegundo);
+                    programarFin(id, m);
+                    break;
+                case HASTA_FIN:
+                    if(m.actualizar(ahora) == MotorHorno.FIN){
+                        // Si tenía pausa, ya ha pasado por ella
+                        terminar(id, m, ahora, pausaEn[id] >= 0 ? 1 : 0);
+                    }else{
+                        programarFin(id, m);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void programarFin(int id, MotorHorno m){
+            fase[id] = HASTA_FIN;
+            rueda.programar(id, (m.finPrevisto() - t0 + NANOS_TICK - 1) / NANOS_TICK);
+        }
+
+        private void terminar(int id, MotorHorno m, long ahora, int pausas){
+            fase[id] = TERMINADO;
+            terminados++;
+            ultimoTick = rueda.getActual();
+            Comida c = comidas.get(comida[id]);
+            int temporizador = m.getTemporizador(ahora);
+            int resultado = c.evaluar(temporizador);
+            resultados[comida[id] * 3 + resultado]++;
+            recomendador.registrar(comida[id], temporizador, resultado);
+            if(diario != null){
+                try {
+                    diario.registrar(System.currentTimeMillis(), c.getNombre(), programado[id], temporizador,
+                            0, pausas, resultado, DiarioSesiones.ORIGEN_SIMULADOR);
+                } catch (IOException ex) {
+                    System.out.println("[!] No se ha podido guardar la sesión: " + ex.getMessage());
+                    diario = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Carga el catálogo sin decodificar imágenes: el de la propiedad
+     * "micro.catalogo" (de texto o, si acaba en ".lst", de directorio) o, si no
+     * se indica, el incluido en el programa.
+     * @return Comidas del catálogo
+     * @throws IOException Si no se puede leer
+     */
+    static ArrayList<Comida> cargarCatalogo() throws IOException {
+        String externo = System.getProperty("micro.catalogo");
+        if(externo != null){
+            if(externo.endsWith(".lst")){
+                return CatalogoDirectorio.abrir(Paths.get(externo)).cargarComidas();
+            }
+            try (InputStream is = Files.newInputStream(Paths.get(externo))) {
+                return new CargadorComidas(ForkJoinPool.commonPool(), 0).leerTexto(is, null);
+            }
+        }
+        URL binario = SimuladorHornos.class.getResource("/micro/datos/comidas.bin");
+        if(binario != null){
+            return CatalogoBinario.abrir(binario).cargarComidas();
+        }
+        try (InputStream is = SimuladorHornos.class.getResourceAsStream("/micro/datos/comidas.txt")) {
+            if(is == null){
+                throw new IOException("No se encuentra el catálogo.");
+            }
+            return new CargadorComidas(ForkJoinPool.commonPool(), 0).leerTexto(is, null);
+        }
+    }
+
+    /**
+     * @param tipo "real", "virtual" o "x" seguido del factor de aceleración
+     * @return Reloj correspondiente
+     */
+    static Reloj crearReloj(String tipo){
+        if(tipo.equalsIgnoreCase("real")){
+            return RelojReal.INSTANCIA;
+        }
+        if(tipo.equalsIgnoreCase("virtual")){
+            return new RelojVirtual();
+        }
+        if(tipo.length() > 1 && (tipo.charAt(0) == 'x' || tipo.charAt(0) == 'X')){
+            return new RelojEscalado(Double.parseDouble(tipo.substring(1)));
+        }
+        throw new IllegalArgumentException("Reloj no válido: " + tipo);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int hornos = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int hilos = args.length > 1 ? Integer.parseInt(args[1]) : Math.min(4, Runtime.getRuntime().availableProcessors());
+        long milisPorSegundo = args.length > 2 ? Long.parseLong(args[2]) : 10;
+        long semilla = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        Reloj reloj = crearReloj(args.length > 4 ? args[4] : "real");
+
+        SimuladorHornos sim = new SimuladorHornos(cargarCatalogo(), hornos, hilos, milisPorSegundo, semilla, reloj);
+        String ruta = System.getProperty("micro.diario");
+        if(ruta == null){
+            sim.ejecutar();
+            sim.imprimirResumen();
+            return;
+        }
+        try (DiarioSesiones d = new DiarioSesiones(Paths.get(ruta))) {
+            sim.setDiario(d);
+            sim.ejecutar();
+            sim.imprimirResumen();
+            long t = System.nanoTime();
+            d.sincronizar();
+            System.out.printf("Diario: %s (%.1f ms para terminar de escribir)%n", ruta, (System.nanoTime() - t) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package micro;
+
+import java.awt.GridLayout;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+import javax.swing.WindowConstants;
+
+/**
+ * Tablero con varios hornos en una sola ventana (ver {@link PanelHorno}).
+ *
+ * Todos los contadores se mueven con un único tick periódico en el
+ * planificador compartido de {@link RelojReal}: en cada uno se actualizan los
+ * motores de los hornos en marcha y, si alguno ha cambiado, se encola un solo
+ * repintado en el EDT que pinta todos los paneles. Con todos los hornos
+ * parados el tick se cancela, así que un tablero parado no gasta nada y uno
+ * con 64 hornos cuesta prácticamente lo mismo que con uno: 64 restas por tick
+ * y un repintado por fotograma.
+ *
+ * Uso: java micro.TableroHornos [hornos]
+ *
+ * @author Zarkrosh
+ */
+public class TableroHornos extends JFrame {
+    // Duración de un fotograma del tablero
+    static final long FOTOGRAMA_MS = 50;
+
+    private final List<PanelHorno> hornos = new ArrayList<>();
+    private final AtomicBoolean pintadoPendiente = new AtomicBoolean(false);
+    private ScheduledFuture<?> latido;      // Con el cerrojo del tablero
+
+    private final Runnable pintar = new Runnable() {
+        @Override
+        public void run() {
+            pintadoPendiente.set(false);
+            for(PanelHorno h : hornos){
+                h.pintar();
+            }
+        }
+    };
+
+    /**
+     * @param n Número de hornos
+     * @param comidas Catálogo compartido por todos
+     */
+    public TableroHornos(int n, List<Comida> comidas) {
+        super("Hornos");
+        int columnas = (int) Math.ceil(Math.sqrt(n));
+        JPanel rejilla = new JPanel(new GridLayout((n + columnas - 1) / columnas, columnas, 4, 4));
+        for(int i = 0; i < n; i++){
+            PanelHorno h = new PanelHorno(i + 1, comidas, this);
+            hornos.add(h);
+            rejilla.add(h);
+        }
+        setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        getContentPane().add(new JScrollPane(rejilla));
+        pack();
+        setLocationRelativeTo(null);
+    }
+
+    /**
+     * Un horno se ha puesto en marcha: arranca el tick si estaba parado.
+     */
+    synchronized void despertar(){
+        if(latido == null){
+            latido = RelojReal.PLANIFICADOR.scheduleAtFixedRate(this::tick, 0, FOTOGRAMA_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Actualiza todos los hornos (hilo planificador).
+     */
+    private void tick(){
+        long ahora = RelojReal.INSTANCIA.nanos();
+        boolean cambios = false;
+        boolean enMarcha = false;
+        for(PanelHorno h : hornos){
+            if(h.actualizar(ahora) != MotorHorno.SIN_CAMBIOS){
+                cambios = true;
+            }
+            enMarcha |= h.enMarcha();
+        }
+        if(cambios && pintadoPendiente.compareAndSet(false, true)){
+            SwingUtilities.invokeLater(pintar);
+        }
+        if(!enMarcha){
+            detenerSiParado();
+        }
+    }
+
+    /**
+     * Cancela el tick si no queda ningún horno en marcha. Se vuelve a mirar con
+     * el cerrojo para no perder uno que arranque justo ahora.
+     */
+    private synchronized void detenerSiParado(){
+        for(PanelHorno h : hornos){
+            if(h.enMarcha()){
+                return;
+            }
+        }
+        if(latido != null){
+            latido.cancel(false);
+            latido = null;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int n = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final List<Comida> comidas = SimuladorHornos.cargarCatalogo();
+        SwingUtilities.invokeLater(() -> new TableroHornos(n, comidas).setVisible(true));
+    }
+}
@@ -0,0 +1,196 @@
+package micro;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vuelve a cargar un catálogo de texto (comidas.txt) cuando se modifica, sin
+ * reiniciar el horno.
+ *
+ * Un hilo aparte espera los cambios del fichero con un {@link WatchService}.
+ * Al recargar se buscan los límites de cada registro sin leerlo y se calcula su
+ * hash (SHA-1 de sus bytes): si ya estaba, se reutiliza la misma
+ * {@link Comida}, con su imagen ya decodificada y sus miniaturas; solo se leen
+ * los registros nuevos o cambiados. La lista nueva se entrega entera al
+ * {@link Oyente}, que la cambia por la anterior de una vez.
+ *
+ * Si el catálogo editado no es válido se avisa y se sigue con el anterior.
+ *
+ * @author Zarkrosh
+ */
+public class VigilanteCatalogo {
+    // Espera a que dejen de llegar cambios antes de leer (los editores guardan en varios pasos)
+    private static final long ESPERA_MS = 200;
+
+    /**
+     * Recibe los catálogos recargados. Se llama desde el hilo del vigilante.
+     */
+    public interface Oyente {
+        /**
+         * @param comidas Catálogo nuevo completo
+         * @param cambiadas Comidas nuevas o cambiadas
+         */
+        void recargado(ArrayList<Comida> comidas, int cambiadas);
+    }
+
+    private final Path fichero;
+    private final Oyente oyente;
+    private Map<ByteBuffer, Comida> porHash = new HashMap<>();
+    private ArrayList<Comida> actual = new ArrayList<>();
+    private int cambiadas = 0;
+    private WatchService servicio;
+
+    /**
+     * @param fichero Catálogo de texto
+     * @param oyente Recibe los catálogos recargados
+     */
+    public VigilanteCatalogo(Path fichero, Oyente oyente) {
+        this.fichero = fichero.toAbsolutePath();
+        this.oyente = oyente;
+    }
+
+    /**
+     * Lee el catálogo reutilizando las comidas de los registros que no han cambiado.
+     * @return Comidas en el orden del catálogo
+     * @throws IOException Si no se puede leer o algún registro no es válido
+     */
+    public synchronized ArrayList<Comida> cargar() throws IOException {
+        byte[] d = Files.readAllBytes(fichero);
+        int[] limites = LectorComidas.limitesRegistros(d, d.length);
+        MessageDigest md = nuevoSha1();
+        Map<ByteBuffer, Comida> nuevos = new HashMap<>();
+        ArrayList<Comida> comidas = new ArrayList<>(limites.length / 2);
+        int leidas = 0;
+        for(int k = 0; k < limites.length; k += 2){
+            int inicio = limites[k];
+            int longitud = limites[k + 1] - inicio;
+            // Sin el último salto de línea, que falta si es el final del fichero
+            int sinSalto = longitud;
+            while(sinSalto > 0 && (d[inicio + sinSalto - 1] == '\n' || d[inicio + sinSalto - 1] == '\r')) sinSalto--;
+            md.update(d, inicio, sinSalto);
+            ByteBuffer hash = ByteBuffer.wrap(md.digest());
+            Comida c = porHash.get(hash);
+            if(c == null){
+                c = nuevos.get(hash);
+            }
+            if(c == null){
+                LectorComidas lector = new LectorComidas(new ByteArrayInputStream(d, inicio, longitud), k / 2);
+                if(!lector.siguiente()){
+                    continue;
+                }
+                c = new Comida(lector.getNombre(), lector.getTiempo(), lector.getMargen(),
+                        new ImagenPNG(lector.copiarImagen()), lector.getCurva(), lector.getPrograma());
+                leidas++;
+            }
+            nuevos.put(hash, c);
+            comidas.add(c);
+        }
+        porHash = nuevos;
+        actual = comidas;
+        cambiadas = leidas;
+        return comidas;
+    }
+
+    /**
+     * Empieza a vigilar el fichero en un hilo aparte.
+     * @throws IOException Si no se puede vigilar su directorio
+     */
+    public synchronized void iniciar() throws IOException {
+        if(servicio != null){
+            return;
+        }
+        final WatchService ws = fichero.getFileSystem().newWatchService();
+        fichero.getParent().register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        servicio = ws;
+        Thread t = new Thread(() -> vigilar(ws), "vigilante-catalogo");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Deja de vigilar el fichero.
+     */
+    public synchronized void detener(){
+        if(servicio != null){
+            try {
+                servicio.close();
+            } catch (IOException ex) {
+                System.out.println("[!] Error al dejar de vigilar el catálogo: " + ex.getMessage());
+            }
+            servicio = null;
+        }
+    }
+
+    private void vigilar(WatchService ws){
+        try {
+            while(true){
+                WatchKey clave = ws.take();
+                boolean cambiado = afectaAlFichero(clave);
+                clave.reset();
+                if(!cambiado){
+                    continue;
+                }
+                while((clave = ws.poll(ESPERA_MS, TimeUnit.MILLISECONDS)) != null){
+                    clave.pollEvents();
+                    clave.reset();
+                }
+                recargar();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // Detenido
+        }
+    }
+
+    private boolean afectaAlFichero(WatchKey clave){
+        boolean afecta = false;
+        for(WatchEvent<?> e : clave.pollEvents()){
+            if(e.kind() == StandardWatchEventKinds.OVERFLOW || fichero.getFileName().equals(e.context())){
+                afecta = true;
+            }
+        }
+        return afecta;
+    }
+
+    private void recargar(){
+        ArrayList<Comida> comidas;
+        int leidas;
+        synchronized(this){
+            ArrayList<Comida> anterior = actual;
+            try {
+                comidas = cargar();
+            } catch (IOException | IllegalArgumentException ex) {
+                System.out.println("[!] No se ha podido recargar el catálogo, se mantiene el anterior: " + ex.getMessage());
+                return;
+            }
+            leidas = cambiadas;
+            if(leidas == 0 && comidas.equals(anterior)){
+                // Mismas comidas en el mismo orden (p.ej. solo ha cambiado la fecha)
+                return;
+            }
+        }
+        oyente.recargado(comidas, leidas);
+    }
+
+    private static MessageDigest nuevoSha1(){
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            // Todas las JVM deben tener SHA-1
+            throw new IllegalStateException(ex);
+        }
+    }
+}
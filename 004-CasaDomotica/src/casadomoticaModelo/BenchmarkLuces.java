@@ -0,0 +1,127 @@
+package casadomoticaModelo;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compara la carga de luces de siempre (BufferedReader, Integer.parseInt y
+ * cinco líneas fijas por luz) con {@link LectorLuces}.
+ *
+ * Genera un fichero de luces en memoria y lo lee varias veces con cada uno,
+ * alternándolos y con una recolección de basura antes de cada lectura para que
+ * las luces de la anterior no cuenten. Se muestra la primera ronda (en frío) y
+ * la mediana y el mínimo de las demás, porque una sola ronda varía mucho.
+ * Después repite la prueba con unas pocas luces erróneas: la carga de siempre
+ * se detiene en la primera, el lector las salta y sigue.
+ *
+ * Uso: java casadomoticaModelo.BenchmarkLuces [luces] [repeticiones]
+ *
+ * @author abeherr
+ * @author hechila
+ */
+public class BenchmarkLuces {
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int repeticiones = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        byte[] fichero = generar(n, 0, new Random(42));
+        System.out.printf("%d luces, %.1f MB%n", n, fichero.length / 1e6);
+
+        double[] msAntiguo = new double[repeticiones];
+        double[] msNuevo = new double[repeticiones];
+        int antiguas = 0;
+        int nuevas = 0;
+        for(int r = 0; r < repeticiones; r++){
+            System.gc();
+            long t = System.nanoTime();
+            antiguas = cargarAntiguo(new ByteArrayInputStream(fichero)).size();
+            msAntiguo[r] = (System.nanoTime() - t) / 1e6;
+            System.gc();
+            t = System.nanoTime();
+            nuevas = cargar(new ByteArrayInputStream(fichero)).size();
+            msNuevo[r] = (System.nanoTime() - t) / 1e6;
+        }
+        System.out.printf("Ronda 1: antiguo %.1f ms, lector %.1f ms%n", msAntiguo[0], msNuevo[0]);
+        if(repeticiones > 1){
+            double[] a = Arrays.copyOfRange(msAntiguo, 1, repeticiones);
+            double[] l = Arrays.copyOfRange(msNuevo, 1, repeticiones);
+            Arrays.sort(a);
+            Arrays.sort(l);
+            System.out.printf("Rondas 2-%d: antiguo %d luces, mediana %.1f ms (mínimo %.1f); lector %d luces, mediana %.1f ms (mínimo %.1f)%n",
+                    repeticiones, antiguas, a[a.length / 2], a[0], nuevas, l[l.length / 2], l[0]);
+        }
+
+        // Una de cada mil luces con errores
+        byte[] conErrores = generar(n, 1000, new Random(7));
+        try {
+            System.out.printf("Con errores: antiguo %d luces%n", cargarAntiguo(new ByteArrayInputStream(conErrores)).size());
+        } catch (NumberFormatException ex) {
+            System.out.println("Con errores: antiguo se detiene (" + ex.getMessage() + ")");
+        }
+        final int[] avisos = new int[1];
+        LectorLuces lector = new LectorLuces(new ByteArrayInputStream(conErrores), (luz, linea, motivo) -> {
+            if(avisos[0]++ < 3){
+                System.out.println("  [!] Luz " + luz + " (línea " + linea + "): " + motivo);
+            }
+        });
+        while(lector.siguiente() != null);
+        System.out.printf("Con errores: lector %d luces, %d descartadas%n", lector.getLeidas(), lector.getErroneas());
+    }
+
+    private static ArrayList<Luz> cargar(InputStream is) throws IOException {
+        ArrayList<Luz> luces = new ArrayList<>();
+        LectorLuces lector = new LectorLuces(is, (luz, linea, motivo) -> { });
+        Luz l;
+        while((l = lector.siguiente()) != null){
+            luces.add(l);
+        }
+        return luces;
+    }
+
+    /**
+     * La carga de siempre de PanelControlador.initLuces().
+     */
+    private static ArrayList<Luz> cargarAntiguo(InputStream is) throws IOException {
+        ArrayList<Luz> luces = new ArrayList<>();
+        InputStreamReader isr = new InputStreamReader(is, "UTF-8");
+        try (BufferedReader br = new BufferedReader(isr)) {
+            while(br.ready()){
+                String nombre = br.readLine();
+                int intensidad = Integer.parseInt(br.readLine());
+                int colorImg = Integer.parseInt(br.readLine());
+                boolean encendida = Boolean.parseBoolean(br.readLine());
+                luces.add(new Luz(nombre, intensidad, new ColorLuz(colorImg), encendida));
+                br.readLine();
+            }
+        }
+        return luces;
+    }
+
+    /**
+     * @param n Número de luces
+     * @param cadaError Una luz con error cada tantas (0 para ninguna)
+     * @return Fichero en el formato de luces.txt
+     */
+    private static byte[] generar(int n, int cadaError, Random r){
+        StringBuilder sb = new StringBuilder(n * 24);
+        for(int i = 0; i < n; i++){
+            sb.append("Luz ").append(i + 1).append('\n');
+            if(cadaError > 0 && r.nextInt(cadaError) == 0){
+                sb.append("cien\n");
+            }else{
+                sb.append(r.nextInt(101)).append('\n');
+            }
+            sb.append(r.nextInt(ColorLuz.COLOR_BLANCA + 1)).append('\n');
+            sb.append(r.nextBoolean()).append('\n');
+            sb.append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,416 @@
+package casadomoticaModelo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lee las luces de un fichero como luces.txt, de una en una y sin cargar el
+ * fichero entero en memoria.
+ *
+ * Cada luz es un bloque de líneas separado de los demás por una o más líneas
+ * en blanco. Los campos pueden ir en el orden de siempre, uno por línea:
+ * <pre>
+ *   nombre
+ *   intensidad    (0-100)
+ *   color         (ver constantes de ColorLuz)
+ *   encendida     (true/false)
+ * </pre>
+ * o con su nombre y en cualquier orden ("intensidad=40", "nombre=Salón"...).
+ * Se pueden mezclar: los campos sin nombre ocupan, por orden, los huecos que
+ * quedan.
+ *
+ * Si una luz tiene algún error se avisa con el número de luz y de línea y se
+ * sigue con la siguiente. Los números se leen directamente de los bytes, sin
+ * excepciones, y solo se guardan el buffer de lectura y la línea actual, así
+ * que la memoria no depende del tamaño del fichero. Cada línea se recorre una
+ * sola vez: al buscar el salto de línea se anota si está en blanco y dónde
+ * está el '=', y se copia de golpe.
+ *
+ * @author abeherr
+ * @author hechila
+ */
+public class LectorLuces {
+
+    /**
+     * Recibe los errores de las luces que no se han podido leer.
+     */
+    public interface Errores {
+        /**
+         * @param luz Número de luz en el fichero (empezando en 1)
+         * @param linea Línea del error
+         * @param motivo Descripción del error
+         */
+        void error(int luz, int linea, String motivo);
+    }
+
+    // Longitud máxima de una línea (bytes)
+    private static final int MAX_LINEA = 1024;
+    private static final long NO_VALIDO = Long.MIN_VALUE;
+
+    // Campos de cada luz, en el orden del formato sin nombres
+    private static final String[] CAMPOS = {"nombre", "intensidad", "color", "encendida"};
+    private static final int NOMBRE = 0;
+    private static final int INTENSIDAD = 1;
+    private static final int COLOR = 2;
+    private static final int ENCENDIDA = 3;
+
+    // ColorLuz no cambia: todas las luces de un color comparten el mismo
+    private static final ColorLuz[] COLORES = new ColorLuz[ColorLuz.COLOR_BLANCA + 1];
+    static {
+        for(int c = 0; c < COLORES.length; c++){
+            COLORES[c] = new ColorLuz(c);
+        }
+    }
+
+    private final InputStream in;
+    private final Errores errores;
+    private final byte[] buffer = new byte[8192];
+    private int pos = 0;
+    private int lim = 0;
+    private boolean primeraLectura = true;
+
+    // Línea actual
+    private final byte[] linea = new byte[MAX_LINEA];
+    private int largo;
+    private boolean demasiadoLarga;
+    private int noBlanco;               // Posición del primer byte que no es espacio ni tabulador, o -1
+    private int igual;                  // Posición del primer '=', o -1
+    private int numLinea = 0;
+    private int corteDesde;             // Último trozo recortado (ver recortar)
+    private int corteHasta;
+
+    // Luz actual
+    private int numLuz = 0;
+    private final boolean[] leido = new boolean[CAMPOS.length];
+    private String nombre;
+    private int intensidad;
+    private int color;
+    private boolean encendida;
+    private int lineaError;
+    private String error;
+
+    private int leidas = 0;
+    private int erroneas = 0;
+
+    /**
+     * @param in Fichero de luces (UTF-8). No se cierra.
+     * @param errores Recibe los errores de cada luz
+     */
+    public LectorLuces(InputStream in, Errores errores) {
+        this.in = in;
+        this.errores = errores;
+    }
+
+    /**
+     * Lee la siguiente luz correcta, saltando (y avisando de) las que tengan errores.
+     * @return Luz leída, o null si se ha acabado el fichero
+     * @throws IOException Si falla la lectura
+     */
+    public Luz siguiente() throws IOException {
+        while(true){
+            // Salta las líneas en blanco hasta el siguiente bloque
+            do {
+                if(!leerLinea()){
+                    return null;
+                }
+            } while(enBlanco());
+            numLuz++;
+            int inicio = numLinea;
+            empezarLuz();
+            do {
+                if(error == null){
+                    campo();
+                }
+            } while(leerLinea() && !enBlanco());
+            if(error == null){
+                comprobarCompleta(inicio);
+            }
+            if(error == null){
+                leidas++;
+                return new Luz(nombre, intensidad, COLORES[color], encendida);
+            }
+            erroneas++;
+            errores.error(numLuz, lineaError, error);
+        }
+    }
+
+    /**
+     * @return Luces leídas correctamente hasta ahora
+     */
+    public int getLeidas(){
+        return leidas;
+    }
+
+    /**
+     * @return Luces descartadas por errores hasta ahora
+     */
+    public int getErroneas(){
+        return erroneas;
+    }
+
+    private void empezarLuz(){
+        for(int i = 0; i < leido.length; i++){
+            leido[i] = false;
+        }
+        nombre = null;
+        error = null;
+    }
+
+    /**
+     * Procesa una línea del bloque de la luz actual.
+     */
+    private void campo(){
+        if(demasiadoLarga){
+            fallo("línea de más de " + MAX_LINEA + " bytes");
+            return;
+        }
+        int desde = 0;
+        int c = -1;
+        if(igual > 0){
+            c = campoConNombre(igual);
+        }
+        if(c >= 0){
+            desde = igual + 1;
+        }else{
+            // Sin nombre: el primer campo que falte
+            c = 0;
+            while(c < leido.length && leido[c]) c++;
+            if(c == leido.length){
+                fallo("sobran líneas");
+                return;
+            }
+        }
+        if(leido[c]){
+            fallo("\"" + CAMPOS[c] + "\" repetido");
+            return;
+        }
+        leido[c] = true;
+        switch(c){
+            case NOMBRE:
+                if(desde > 0){
+                    // Con nombre de campo se quitan los espacios alrededor del '='
+                    recortar(desde, largo);
+                }else{
+                    corteDesde = 0;
+                    corteHasta = largo;
+                }
+                nombre = new String(linea, corteDesde, corteHasta - corteDesde, StandardCharsets.UTF_8);
+                if(nombre.trim().isEmpty()){
+                    fallo("nombre vacío");
+                }
+                break;
+            case INTENSIDAD:
+                long i = entero(linea, desde, largo);
+                if(i < 0 || i > 100){
+                    fallo("intensidad no válida \"" + texto(desde) + "\" (0-100)");
+                }
+                intensidad = (int) i;
+                break;
+            case COLOR:
+                long k = entero(linea, desde, largo);
+                if(k < ColorLuz.COLOR_AMARILLO || k > ColorLuz.COLOR_BLANCA){
+                    fallo("color no válido \"" + texto(desde) + "\" ("
+                            + ColorLuz.COLOR_AMARILLO + "-" + ColorLuz.COLOR_BLANCA + ")");
+                }
+                color = (int) k;
+                break;
+            case ENCENDIDA:
+                recortar(desde, largo);
+                if(igualSinMayusculas("true")){
+                    encendida = true;
+                }else if(igualSinMayusculas("false")){
+                    encendida = false;
+                }else{
+                    fallo("estado no válido \"" + texto(desde) + "\" (true/false)");
+                }
+                break;
+        }
+    }
+
+    /**
+     * @param igual Posición del '=' en la línea
+     * @return Campo cuyo nombre va antes del '=', o -1 si no es ninguno
+     */
+    private int campoConNombre(int igual){
+        recortar(0, igual);
+        for(int c = 0; c < CAMPOS.length; c++){
+            if(igualSinMayusculas(CAMPOS[c])){
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private void comprobarCompleta(int inicio){
+        for(int c = 0; c < leido.length; c++){
+            if(!leido[c]){
+                lineaError = inicio;
+                error = "falta \"" + CAMPOS[c] + "\"";
+                return;
+            }
+        }
+    }
+
+    private void fallo(String motivo){
+        if(error == null){
+            error = motivo;
+            lineaError = numLinea;
+        }
+    }
+
+    /**
+     * Lee la siguiente línea sin el salto de línea. Si es demasiado larga se
+     * guarda el principio y se salta el resto.
+     * @return false si se ha acabado el fichero
+     */
+    private boolean leerLinea() throws IOException {
+        largo = 0;
+        demasiadoLarga = false;
+        noBlanco = -1;
+        igual = -1;
+        boolean algo = false;
+        while(true){
+            if(pos == lim){
+                if(!llenar()){
+                    if(algo){
+                        break;
+                    }
+                    return false;
+                }
+            }
+            algo = true;
+            // Busca el salto de línea en lo que queda del buffer
+            int desde = pos;
+            int fin = pos;
+            while(fin < lim){
+                byte b = buffer[fin];
+                if(b == '\n'){
+                    break;
+                }
+                if(b != ' ' && b != '\t'){
+                    if(noBlanco < 0){
+                        noBlanco = largo + fin - desde;
+                    }
+                    if(b == '=' && igual < 0){
+                        igual = largo + fin - desde;
+                    }
+                }
+                fin++;
+            }
+            int n = Math.min(fin - desde, MAX_LINEA - largo);
+            System.arraycopy(buffer, desde, linea, largo, n);
+            largo += n;
+            if(n < fin - desde){
+                demasiadoLarga = true;
+            }
+            if(fin < lim){
+                pos = fin + 1;
+                break;
+            }
+            pos = fin;
+        }
+        if(largo > 0 && linea[largo - 1] == '\r' && !demasiadoLarga){
+            largo--;
+        }
+        numLinea++;
+        return true;
+    }
+
+    private boolean llenar() throws IOException {
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while(n == 0);
+        if(n < 0){
+            return false;
+        }
+        pos = 0;
+        lim = n;
+        if(primeraLectura){
+            primeraLectura = false;
+            // Marca de orden de bytes de UTF-8 al principio del fichero (puede
+            // llegar en varias lecturas)
+            while(lim < 3 && (n = in.read(buffer, lim, buffer.length - lim)) >= 0){
+                lim += n;
+            }
+            if(lim >= 3 && (buffer[0] & 0xFF) == 0xEF && (buffer[1] & 0xFF) == 0xBB && (buffer[2] & 0xFF) == 0xBF){
+                pos = 3;
+            }
+        }
+        return true;
+    }
+
+    private boolean enBlanco(){
+        // El '\r' quitado del final no cuenta
+        return (noBlanco < 0 || noBlanco >= largo) && !demasiadoLarga;
+    }
+
+    /**
+     * Deja en corteDesde y corteHasta el trozo [desde, hasta) de la línea sin
+     * espacios a los lados.
+     */
+    private void recortar(int desde, int hasta){
+        while(desde < hasta && (linea[desde] == ' ' || linea[desde] == '\t')) desde++;
+        while(hasta > desde && (linea[hasta - 1] == ' ' || linea[hasta - 1] == '\t')) hasta--;
+        corteDesde = desde;
+        corteHasta = hasta;
+    }
+
+    /**
+     * Compara el último trozo recortado con una palabra en ASCII.
+     */
+    private boolean igualSinMayusculas(String palabra){
+        if(corteHasta - corteDesde != palabra.length()){
+            return false;
+        }
+        for(int i = 0; i < palabra.length(); i++){
+            int b = linea[corteDesde + i];
+            if(b >= 'A' && b <= 'Z'){
+                b += 'a' - 'A';
+            }
+            if(b != palabra.charAt(i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String texto(int desde){
+        return new String(linea, desde, largo - desde, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Lee un entero en base 10 sin lanzar excepciones. Admite espacios a los
+     * lados y un signo.
+     * @param b Bytes
+     * @param desde Inicio (incluido)
+     * @param hasta Fin (excluido)
+     * @return Valor, o Long.MIN_VALUE si no es un entero o no cabe en un int
+     */
+    static long entero(byte[] b, int desde, int hasta){
+        while(desde < hasta && (b[desde] == ' ' || b[desde] == '\t')) desde++;
+        while(hasta > desde && (b[hasta - 1] == ' ' || b[hasta - 1] == '\t')) hasta--;
+        boolean negativo = false;
+        if(desde < hasta && (b[desde] == '-' || b[desde] == '+')){
+            negativo = b[desde] == '-';
+            desde++;
+        }
+        if(desde == hasta){
+            return NO_VALIDO;
+        }
+        long v = 0;
+        for(int i = desde; i < hasta; i++){
+            int d = b[i] - '0';
+            if(d < 0 || d > 9){
+                return NO_VALIDO;
+            }
+            v = v * 10 + d;
+            if(v > Integer.MAX_VALUE + 1L){
+                return NO_VALIDO;
+            }
+        }
+        v = negativo ? -v : v;
+        return v < Integer.MIN_VALUE || v > Integer.MAX_VALUE ? NO_VALIDO : v;
+    }
+}
@@ -1,14 +1,12 @@
 package casadomoticaVista;
 
 import casadomoticaModelo.ColorLuz;
+import casadomoticaModelo.LectorLuces;
 import casadomoticaModelo.PanelModelo;
 import casadomoticaModelo.Luz;
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
@@ -36,33 +34,29 @@ public final class PanelControlador {
     
     /**
      * Inicializa las luces desde fichero en memoria y asigna al modelo.
+     * Las luces con errores se avisan y se saltan (ver {@link LectorLuces}).
      */
     public void initLuces(){
         ArrayList<Luz> luces = new ArrayList<>();
-        try {
-            InputStream is = getClass().getResourceAsStream(PATH_LUCES);
-            InputStreamReader isr = new InputStreamReader(is, "UTF-8");
-            try (BufferedReader br = new BufferedReader(isr)) {
-                while(br.ready()){
-                    // Lee datos de las luces
-                    String nombre = br.readLine();
-                    int intensidad = Integer.parseInt(br.readLine());
-                    int colorImg = Integer.parseInt(br.readLine());
-                    boolean encendida = Boolean.parseBoolean(br.readLine());
-                    luces.add(new Luz(nombre, intensidad, new ColorLuz(colorImg), encendida));
-                    br.readLine(); // Siguiente sección
-                }
+        try (InputStream is = getClass().getResourceAsStream(PATH_LUCES)) {
+            if(is == null){
+                throw new FileNotFoundException(PATH_LUCES);
+            }
+            LectorLuces lector = new LectorLuces(is, (luz, linea, motivo) ->
+                    System.out.println("[!] Luz " + luz + " de \"luces.txt\" (línea " + linea + "): " + motivo + ". Se salta."));
+            Luz l;
+            while((l = lector.siguiente()) != null){
+                luces.add(l);
             }
         } catch (FileNotFoundException ex) {
             System.out.println("[!] El archivo \"luces.txt\" no existe.");
             System.exit(-1);
-        } catch (UnsupportedEncodingException ex) {
-            System.out.println("[!] Codificación no soportada. Puede haber problemas.");
         } catch (IOException ex) {
             System.out.println("[!] Error al leer el archivo \"luces.txt\".");
             System.exit(-1);
-        } catch (NumberFormatException ex) {
-            System.out.println("[!] Error al leer un entero en el archivo \"luces.txt\".");
+        }
+        if(luces.isEmpty()){
+            System.out.println("[!] El archivo \"luces.txt\" no tiene ninguna luz válida.");
             System.exit(-1);
         }
         